@@ -0,0 +1,47 @@
+package com.es.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * Runs the benchmarks with the gc profiler always on, so every result has its bytes per operation
+ * (gc.alloc.rate.norm) next to its time per operation. Takes the usual JMH command line, so a
+ * regex picks the benchmarks to run and -p suite=tactics picks the positions.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        final OptionsBuilder options = new OptionsBuilder();
+
+        options.parent(commandLine);
+
+        if (!hasGcProfiler(commandLine)) {
+            options.addProfiler(GCProfiler.class);
+        }
+
+        new Runner(options.build()).run();
+    }
+
+    /**
+     * Checks for -prof gc on the command line, so the profiler isn't added twice.
+     */
+    private static boolean hasGcProfiler(CommandLineOptions commandLine) {
+        for (ProfilerConfig profiler : commandLine.getProfilers()) {
+            if (profiler.getKlass().equals("gc") || profiler.getKlass().equals(GCProfiler.class.getName())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,166 @@
+package com.es.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.es.Bitboards;
+import com.es.Board;
+import com.es.Zobrist;
+import com.es.pieces.Pieces;
+
+/**
+ * The board's hot paths: move generation, making and undoing moves, attack and check tests, and hashing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    private final int[] buffer = new int[Board.MAX_MOVES];
+
+    // the legal moves of each position, for make/undo and givesCheck
+    private int[][] moves;
+
+    @Setup
+    public void setup(Positions positions) {
+        moves = new int[positions.boards.length][];
+
+        for (int i = 0; i < positions.boards.length; ++i) {
+            moves[i] = Arrays.copyOf(buffer, positions.boards[i].generateAllMoves(buffer));
+        }
+    }
+
+    @Benchmark
+    public int generateAllMoves(Positions positions) {
+        int ret = 0;
+
+        for (Board board : positions.boards) {
+            ret += board.generateAllMoves(buffer);
+        }
+
+        return ret;
+    }
+
+    @Benchmark
+    public int countLegalMoves(Positions positions) {
+        int ret = 0;
+
+        for (Board board : positions.boards) {
+            ret += board.countLegalMoves();
+        }
+
+        return ret;
+    }
+
+    @Benchmark
+    public void makeUndoMove(Positions positions, Blackhole blackhole) throws Exception {
+        for (int i = 0; i < positions.boards.length; ++i) {
+            final Board board = positions.boards[i];
+
+            for (int move : moves[i]) {
+                board.makeMove(move, false);
+                blackhole.consume(board.getZobristKey());
+                board.undoMove();
+            }
+        }
+    }
+
+    @Benchmark
+    public int givesCheck(Positions positions) {
+        int ret = 0;
+
+        for (int i = 0; i < positions.boards.length; ++i) {
+            final Board board = positions.boards[i];
+
+            for (int move : moves[i]) {
+                if (board.givesCheck(move)) {
+                    ++ret;
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Asks if each of the 64 squares is attacked by the side not to move.
+     */
+    @Benchmark
+    public int isSquareAttacked(Positions positions) {
+        int ret = 0;
+
+        for (Board board : positions.boards) {
+            for (int square = 0; square < Board.MAX_SQUARE; ++square) {
+                if (Board.isValidPosition(square) && board.isSquareAttacked(board.getActiveColor(), square)) {
+                    ++ret;
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    @Benchmark
+    public int isInCheck(Positions positions) {
+        int ret = 0;
+
+        for (Board board : positions.boards) {
+            if (board.isInCheck(board.getActiveColor())) {
+                ++ret;
+            }
+
+            if (board.isInCheck(board.getActiveColor().inverse())) {
+                ++ret;
+            }
+        }
+
+        return ret;
+    }
+
+    @Benchmark
+    public int hashCode(Positions positions) {
+        int ret = 0;
+
+        for (Board board : positions.boards) {
+            ret += board.hashCode();
+        }
+
+        return ret;
+    }
+
+    /**
+     * Computes the pieces' part of the Zobrist key from scratch, what the board would pay without
+     * updating the key as moves are made.
+     */
+    @Benchmark
+    public long zobristFromScratch(Positions positions) {
+        long ret = 0L;
+
+        for (Board board : positions.boards) {
+            for (int square = 0; square < Board.MAX_SQUARE; ++square) {
+                final int piece = board.getPieceCode(square);
+
+                if (Board.isValidPosition(square) && piece != Pieces.EMPTY) {
+                    ret ^= Zobrist.PIECES[Pieces.colorOf(piece)][Pieces.typeOf(piece)][Bitboards.toIndex(square)];
+                }
+            }
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,63 @@
+package com.es.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.es.Board;
+import com.es.ai.evaluate.AbstractEvaluate;
+import com.es.ai.evaluate.PieceOnlyEvaluate;
+import com.es.ai.evaluate.PositionOnlyEvaluate;
+import com.es.ai.evaluate.SimpleEvaluate;
+import com.es.pieces.Piece.Color;
+
+/**
+ * Each of the {@link AbstractEvaluate} implementations, scoring the positions for white.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluateBenchmark {
+
+    @Param({"PieceOnly", "PositionOnly", "Simple"})
+    public String evaluator;
+
+    private AbstractEvaluate evaluate;
+
+    @Setup
+    public void setup() {
+        if (evaluator.equals("PieceOnly")) {
+            evaluate = new PieceOnlyEvaluate(Color.WHITE);
+        } else if (evaluator.equals("PositionOnly")) {
+            evaluate = new PositionOnlyEvaluate(Color.WHITE);
+        } else if (evaluator.equals("Simple")) {
+            evaluate = new SimpleEvaluate(Color.WHITE);
+        } else {
+            throw new IllegalArgumentException("Unknown evaluator: " + evaluator);
+        }
+    }
+
+    @Benchmark
+    public int evaluate(Positions positions) {
+        int ret = 0;
+
+        for (Board board : positions.boards) {
+            ret += evaluate.evaluate(board);
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,96 @@
+package com.es.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.es.Bitboards;
+import com.es.Board;
+import com.es.pieces.Pieces;
+
+/**
+ * Move generation for one type of piece at a time, over the side to move's pieces of that type.
+ *
+ * {@link com.es.pieces.Piece#generateAllMoves(Board, int)} allocates an array per call, which
+ * shows up in the gc profiler next to {@link Board#generatePieceMoves(int, int, int[], int)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PieceBenchmark {
+
+    @Param({"PAWN", "KNIGHT", "BISHOP", "ROOK", "QUEEN", "KING"})
+    public String type;
+
+    private final int[] buffer = new int[Board.MAX_MOVES];
+
+    // the squares of the pieces of the type in each position
+    private int[][] squares;
+
+    @Setup
+    public void setup(Positions positions) {
+        final int typeIndex = typeIndex(type);
+        final int[] found = new int[Board.MAX_PIECES];
+
+        squares = new int[positions.boards.length][];
+
+        for (int i = 0; i < positions.boards.length; ++i) {
+            final int count = positions.boards[i].getPiecesOfType(positions.boards[i].getActiveColor(), typeIndex, found);
+
+            squares[i] = new int[count];
+            System.arraycopy(found, 0, squares[i], 0, count);
+        }
+    }
+
+    private static int typeIndex(String type) {
+        final String[] names = {"PAWN", "KNIGHT", "BISHOP", "ROOK", "QUEEN", "KING"};
+
+        for (int i = 0; i < Bitboards.PIECE_TYPES; ++i) {
+            if (names[i].equals(type)) {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown piece type: " + type);
+    }
+
+    @Benchmark
+    public void pieceGenerateAllMoves(Positions positions, Blackhole blackhole) {
+        for (int i = 0; i < positions.boards.length; ++i) {
+            final Board board = positions.boards[i];
+
+            for (int square : squares[i]) {
+                blackhole.consume(board.getPiece(square).generateAllMoves(board, square));
+            }
+        }
+    }
+
+    @Benchmark
+    public int generatePieceMoves(Positions positions) {
+        int ret = 0;
+
+        for (int i = 0; i < positions.boards.length; ++i) {
+            final Board board = positions.boards[i];
+
+            for (int square : squares[i]) {
+                ret += board.generatePieceMoves(board.getPieceCode(square), square, buffer, 0);
+            }
+        }
+
+        return ret;
+    }
+}
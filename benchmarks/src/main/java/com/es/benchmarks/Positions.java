@@ -0,0 +1,57 @@
+package com.es.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.es.Board;
+
+/**
+ * The fixed positions every benchmark runs over, so the numbers can be compared from run to run.
+ *
+ * The perft positions are lines from perftsuite.epd: the start position, Kiwipete, castling,
+ * sliders and pawn endings. The tactics positions are lines from the mate/*.PGN suites, which are
+ * mostly crowded middlegames. An operation covers every position in the chosen set.
+ */
+@State(Scope.Thread)
+public class Positions {
+
+    public static final String[] PERFT = {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "1r2k2r/8/8/8/8/8/8/R3K2R w KQk - 0 1",
+        "r3k2r/8/8/8/8/8/8/R3K1R1 b Qkq - 0 1",
+        "k7/B7/1B6/1B6/8/8/8/K6b w - - 0 1",
+        "8/8/3k4/3p4/8/3P4/3K4/8 w - - 0 1",
+        "7k/3p4/8/8/3P4/8/8/K7 b - - 0 1",
+        "7k/8/p7/8/8/1P6/8/7K b - - 0 1"
+    };
+
+    public static final String[] TACTICS = {
+        "r1b2rk1/2q1b1pp/p2ppn2/1p6/3QP3/1BN1B3/PPP3PP/R4RK1 w - - 0 1",
+        "r2qk1r1/p4p2/bp2pQp1/1n1pP1Bp/7P/3P2N1/P1R2PP1/2R3K1 w q - 0 1",
+        "6k1/p1qb1p1p/1p3np1/2b2p2/2B5/2P3N1/PP2QPPP/4N1K1 b - - 0 1",
+        "2rq1kr1/bp3p2/p2pb3/5N1p/1P1pB2P/P5P1/2P1QP2/3R1RK1 b - - 0 1",
+        "r1b2r1k/pp2q1pp/2p2p2/2p1n2N/4P3/1PNP2QP/1PP2RP1/5RK1 w - - 0 1",
+        "4r1k1/p1pb1ppp/Qbp1r3/8/1P6/2Pq1B2/R2P1PPP/2B2RK1 b - - 0 1",
+        "r4rk1/1ppbqppp/2np1n2/4p3/p1P1N3/P1QPPP2/1P2B1PP/R1B2RK1 b - - 0 1",
+        "5rk1/ppp1qn1p/3pB1pr/3Pp3/2P1Pn2/PPB5/1Q4RP/5RK1 w - - 0 1"
+    };
+
+    @Param({"perft", "tactics"})
+    public String suite;
+
+    public Board[] boards;
+
+    @Setup
+    public void setup() {
+        final String[] fens = suite.equals("perft") ? PERFT : TACTICS;
+
+        boards = new Board[fens.length];
+
+        for (int i = 0; i < fens.length; ++i) {
+            boards[i] = Board.fromFEN(fens[i]);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.es;
+
+import com.es.pieces.Piece.Color;
+import com.es.pieces.Pieces;
+
+/**
+ * Static helpers and attack tables for 64-bit bitboards.
+ *
+ * Bit 0 is a1, bit 7 is h1 and bit 63 is h8. Use {@link #toIndex(int)} and {@link #toSquare(int)}
+ * to convert between a bit index and the 0x88 squares used by {@link Board}.
+ */
+public final class Bitboards {
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+    public static final int PIECE_TYPES = 6;
+
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+
+    /**
+     * The squares a pawn of the given color attacks from a square: [color][index].
+     */
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // the first two deltas of each set move towards higher bit indexes
+    static final int[] ROOK_DELTAS = { 0x01, 0x10, -0x01, -0x10 };
+    static final int[] BISHOP_DELTAS = { 0x11, 0x0f, -0x11, -0x0f };
+
+    private static final long[][] ROOK_RAYS = new long[4][64];
+    private static final long[][] BISHOP_RAYS = new long[4][64];
+
+    static {
+        for(int index=0; index < 64; ++index) {
+            final int square = toSquare(index);
+
+            KNIGHT_ATTACKS[index] = leaperAttacks(square, Pieces.KNIGHT_DELTAS);
+            KING_ATTACKS[index] = leaperAttacks(square, Pieces.KING_DELTAS);
+            PAWN_ATTACKS[WHITE][index] = leaperAttacks(square, new int[] { 0x0f, 0x11 });
+            PAWN_ATTACKS[BLACK][index] = leaperAttacks(square, new int[] { -0x0f, -0x11 });
+
+            for(int d=0; d < 4; ++d) {
+                ROOK_RAYS[d][index] = ray(square, ROOK_DELTAS[d]);
+                BISHOP_RAYS[d][index] = ray(square, BISHOP_DELTAS[d]);
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    /**
+     * Converts a 0x88 square into a bit index.
+     * @param square the 0x88 square.
+     * @return the bit index, 0 - 63.
+     */
+    public static int toIndex(int square) {
+        return (square + (square & 0x07)) >> 1;
+    }
+
+    /**
+     * Converts a bit index into a 0x88 square.
+     * @param index the bit index, 0 - 63.
+     * @return the 0x88 square.
+     */
+    public static int toSquare(int index) {
+        return index + (index & ~0x07);
+    }
+
+    /**
+     * Returns a bitboard with only the bit for a 0x88 square set.
+     * @param square the 0x88 square.
+     * @return the bitboard for the square.
+     */
+    public static long squareBit(int square) {
+        return 1L << toIndex(square);
+    }
+
+    public static int colorIndex(Color color) {
+        return color == Color.WHITE ? WHITE : BLACK;
+    }
+
+    /**
+     * Looks up the squares a rook attacks given the occupied squares on the board.
+     * @param index the bit index of the rook.
+     * @param occupied all the occupied squares.
+     * @return the attacked squares, including the first blocker in each direction.
+     */
+    public static long rookAttacks(int index, long occupied) {
+        return Magics.rookAttacks(index, occupied);
+    }
+
+    /**
+     * Looks up the squares a bishop attacks given the occupied squares on the board.
+     * @param index the bit index of the bishop.
+     * @param occupied all the occupied squares.
+     * @return the attacked squares, including the first blocker in each direction.
+     */
+    public static long bishopAttacks(int index, long occupied) {
+        return Magics.bishopAttacks(index, occupied);
+    }
+
+    public static long queenAttacks(int index, long occupied) {
+        return Magics.queenAttacks(index, occupied);
+    }
+
+    /**
+     * Returns the squares strictly between two bit indexes on the same rank, file or diagonal.
+     * @param a the bit index of the first square.
+     * @param b the bit index of the second square.
+     * @return the squares between them, or 0 if they are not on a common line.
+     */
+    public static long between(int a, int b) {
+        final long aBit = 1L << a;
+        final long bBit = 1L << b;
+
+        // each attack set stops at the other square, so they only overlap between the two
+        if((rookAttacks(a, 0) & bBit) != 0) {
+            return rookAttacks(a, bBit) & rookAttacks(b, aBit);
+        } else if((bishopAttacks(a, 0) & bBit) != 0) {
+            return bishopAttacks(a, bBit) & bishopAttacks(b, aBit);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Returns the full rank, file or diagonal that passes through two bit indexes.
+     * @param a the bit index of the first square.
+     * @param b the bit index of the second square.
+     * @return the squares on the line, including a and b, or 0 if they are not on a common line.
+     */
+    public static long line(int a, int b) {
+        final long ends = (1L << a) | (1L << b);
+
+        // on an empty board the other lines through each square never cross away from a and b
+        if((rookAttacks(a, 0) & (1L << b)) != 0) {
+            return (rookAttacks(a, 0) & rookAttacks(b, 0)) | ends;
+        } else if((bishopAttacks(a, 0) & (1L << b)) != 0) {
+            return (bishopAttacks(a, 0) & bishopAttacks(b, 0)) | ends;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Converts a bitboard into an array of 0x88 squares.
+     * @param bitboard the squares to convert.
+     * @return the squares in increasing (sorted) order.
+     */
+    public static int[] toSquares(long bitboard) {
+        final int[] ret = new int[Long.bitCount(bitboard)];
+
+        for(int i=0; bitboard != 0; ++i) {
+            ret[i] = toSquare(Long.numberOfTrailingZeros(bitboard));
+            bitboard &= bitboard - 1;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Computes rook attacks by scanning each ray; slow, only used to build the {@link Magics} tables.
+     */
+    static long rookRayAttacks(int index, long occupied) {
+        return rayAttacks(ROOK_RAYS[0], true, index, occupied) |
+               rayAttacks(ROOK_RAYS[1], true, index, occupied) |
+               rayAttacks(ROOK_RAYS[2], false, index, occupied) |
+               rayAttacks(ROOK_RAYS[3], false, index, occupied);
+    }
+
+    /**
+     * Computes bishop attacks by scanning each ray; slow, only used to build the {@link Magics} tables.
+     */
+    static long bishopRayAttacks(int index, long occupied) {
+        return rayAttacks(BISHOP_RAYS[0], true, index, occupied) |
+               rayAttacks(BISHOP_RAYS[1], true, index, occupied) |
+               rayAttacks(BISHOP_RAYS[2], false, index, occupied) |
+               rayAttacks(BISHOP_RAYS[3], false, index, occupied);
+    }
+
+    private static long rayAttacks(long[] rays, boolean increasing, int index, long occupied) {
+        final long ray = rays[index];
+        final long blockers = ray & occupied;
+
+        if(blockers == 0) {
+            return ray;
+        }
+
+        // the closest blocker is the lowest bit going up, and the highest bit going down
+        final int blocker = increasing ? Long.numberOfTrailingZeros(blockers) : 63 - Long.numberOfLeadingZeros(blockers);
+
+        return ray ^ rays[blocker];
+    }
+
+    private static long leaperAttacks(int square, int[] deltas) {
+        long ret = 0;
+
+        for(int delta:deltas) {
+            if(Board.isValidPosition(square + delta)) {
+                ret |= squareBit(square + delta);
+            }
+        }
+
+        return ret;
+    }
+
+    private static long ray(int square, int delta) {
+        long ret = 0;
+
+        for(int pos = square + delta; Board.isValidPosition(pos); pos += delta) {
+            ret |= squareBit(pos);
+        }
+
+        return ret;
+    }
+}
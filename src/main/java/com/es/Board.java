@@ -1,28 +1,19 @@
 package com.es;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.es.pieces.AbstractPiece;
-import com.es.pieces.Bishop;
-import com.es.pieces.King;
-import com.es.pieces.Knight;
-import com.es.pieces.Pawn;
 import com.es.pieces.Piece;
 import com.es.pieces.Piece.Color;
-import com.es.pieces.Queen;
-import com.es.pieces.Rook;
+import com.es.pieces.Pieces;
 import com.fluxchess.jcpi.models.GenericBoard;
 import com.fluxchess.jcpi.models.GenericCastling;
 import com.fluxchess.jcpi.models.GenericColor;
-import com.fluxchess.jcpi.models.GenericFile;
 import com.fluxchess.jcpi.models.GenericPiece;
 import com.fluxchess.jcpi.models.GenericPosition;
-import com.fluxchess.jcpi.models.GenericRank;
 
 /**
  * A representation of a chess board.
@@ -61,100 +52,174 @@ public final class Board implements Cloneable {
     public static final int MAX_ROW = 8;
     public static final int MAX_COL = 8;
     public static final int MAX_SQUARE = 0x78;
-    public static final int NULL_MOVE = createMoveValue(MAX_SQUARE, MAX_SQUARE);
 
-    private final Piece[] board;
+    /**
+     * Never a legal move, as it moves from a1 to a1.
+     */
+    public static final int NULL_MOVE = 0;
+
+    // the flags in the top 4 bits of a move; a promotion keeps the promote value, less one, in the low 2 bits
+    public static final int FLAG_DOUBLE_PUSH = 0x1000;
+    public static final int FLAG_KING_CASTLE = 0x2000;
+    public static final int FLAG_QUEEN_CASTLE = 0x3000;
+    public static final int FLAG_CAPTURE = 0x4000;
+    public static final int FLAG_EN_PASSANT = 0x5000;
+    public static final int FLAG_PROMOTION = 0x8000;
+    private static final int FLAGS = 0xF000;
+
+    /**
+     * The size of a buffer large enough to hold all of the moves for any position.
+     */
+    public static final int MAX_MOVES = 256;
+
+    /**
+     * The initial depth of the undo stack, allocated when the first move is pushed onto it; it grows if
+     * a game gets longer than this.
+     */
+    public static final int UNDO_SIZE = 1024;
+
+    public static final int WHITE_KING_CASTLE = 0x01;
+    public static final int WHITE_QUEEN_CASTLE = 0x02;
+    public static final int BLACK_KING_CASTLE = 0x04;
+    public static final int BLACK_QUEEN_CASTLE = 0x08;
+
+    // the castling rights kept when a piece moves from or to a square: [square]
+    private static final int[] CASTLING_KEPT = new int[MAX_SQUARE];
+
+    // the squares between the king and rook that must be empty to castle: [color]
+    private static final long[] KING_SIDE_EMPTY = { 0x60L, 0x60L << 56 };
+    private static final long[] QUEEN_SIDE_EMPTY = { 0x0EL, 0x0EL << 56 };
+
+    static {
+        Arrays.fill(CASTLING_KEPT, WHITE_KING_CASTLE | WHITE_QUEEN_CASTLE | BLACK_KING_CASTLE | BLACK_QUEEN_CASTLE);
+
+        CASTLING_KEPT[0x04] &= ~(WHITE_KING_CASTLE | WHITE_QUEEN_CASTLE);
+        CASTLING_KEPT[0x00] &= ~WHITE_QUEEN_CASTLE;
+        CASTLING_KEPT[0x07] &= ~WHITE_KING_CASTLE;
+        CASTLING_KEPT[0x74] &= ~(BLACK_KING_CASTLE | BLACK_QUEEN_CASTLE);
+        CASTLING_KEPT[0x70] &= ~BLACK_QUEEN_CASTLE;
+        CASTLING_KEPT[0x77] &= ~BLACK_KING_CASTLE;
+    }
+
+    /**
+     * The most pieces a side can have, and so the most of any one type.
+     */
+    public static final int MAX_PIECES = 16;
+
+    // the stages of move generation
+    private static final int CAPTURES = 0x01;
+    private static final int QUIETS = 0x02;
+
+    private final byte[] board;    // the piece codes from Pieces
 
-    private final int[] blackPieces;
-    private final int[] whitePieces;
+    // the squares of each type of piece, and the index of each square in its list
+    private final int[][] pieceLists;   // [code][index]
+    private final int[] pieceCounts;    // [code]
+    private final int[] pieceIndex;     // [square]
 
     private int blackKing;
     private int whiteKing;
 
-    private boolean whiteKingCastle = false;
-    private boolean whiteQueenCastle = false;
-    private boolean blackKingCastle = false;
-    private boolean blackQueenCastle = false;
+    private final long[][] bitboards;       // [color][type] occupancy
+    private final long[] colorBitboards;    // [color] occupancy
+    private long occupied;
+
+    private int castling;   // the castling rights still available, the _CASTLE bits
 
     private int enPassant = Board.MAX_SQUARE;
 
     private Color activeColor = Color.WHITE;
 
-    private int hashCode;
+    private long checkers;  // the pieces giving check to the side to move
+
+    // what givesCheck needs, worked out the first time it's called in a position
+    private final long[] checkSquares = new long[Bitboards.KING];  // [type] the squares a piece checks the other king from
+    private long discoverers;   // the side to move's pieces that uncover a check by moving off the line
+    private boolean checkInfoValid;
+
+    private long zobristKey;
+    private long pawnKey;
+
+    // incremental evaluation terms, white's total minus black's
+    private int materialScore;
+    private int positionScore;
+
+    private int halfMoveClock;  // moves since the last capture or pawn move
     
     private int moves; // starts at 1 and increments after a black move
 
+    // the undo stack, one entry per move made; empty until a move is pushed, so copy-make boards never allocate it
+    private int[] undoMoves = new int[0];
+    private int[] undoCaptured = new int[0];
+    private int[] undoCastling = new int[0];
+    private int[] undoEnPassant = new int[0];
+    private int[] undoHalfMoveClock = new int[0];
+    private long[] undoZobristKeys = new long[0];
+    private long[] undoPawnKeys = new long[0];
+    private long[] undoCheckers = new long[0];
+    private int[] undoMaterialScores = new int[0];
+    private int[] undoPositionScores = new int[0];
+    private int undoCount;
+
+    private final int[] checkMoves = new int[MAX_MOVES];   // scratch space for checking a move
+
     /**
      * Constructs a new board with all the pieces in the starting position.
      */
     public Board() {
-        board = new Piece[MAX_SQUARE];
+        board = new byte[MAX_SQUARE];
 
-        blackPieces = new int[16];
-        whitePieces = new int[16];
+        pieceLists = new int[Pieces.CODES][MAX_PIECES];
+        pieceCounts = new int[Pieces.CODES];
+        pieceIndex = new int[MAX_SQUARE];
+
+        bitboards = new long[2][Bitboards.PIECE_TYPES];
+        colorBitboards = new long[2];
 
         // fill in black's pieces
-        board[0x70] = new Rook(Color.BLACK);
-        board[0x71] = new Knight(Color.BLACK);
-        board[0x72] = new Bishop(Color.BLACK);
-        board[0x73] = new Queen(Color.BLACK);
-        board[0x74] = new King(Color.BLACK);
-        board[0x75] = new Bishop(Color.BLACK);
-        board[0x76] = new Knight(Color.BLACK);
-        board[0x77] = new Rook(Color.BLACK);
+        board[0x70] = Pieces.BLACK_ROOK;
+        board[0x71] = Pieces.BLACK_KNIGHT;
+        board[0x72] = Pieces.BLACK_BISHOP;
+        board[0x73] = Pieces.BLACK_QUEEN;
+        board[0x74] = Pieces.BLACK_KING;
+        board[0x75] = Pieces.BLACK_BISHOP;
+        board[0x76] = Pieces.BLACK_KNIGHT;
+        board[0x77] = Pieces.BLACK_ROOK;
 
         // add pawns to the board
         for (int i = 0x60; i < 0x68; ++i) {
-            board[i] = new Pawn(Color.BLACK);
+            board[i] = Pieces.BLACK_PAWN;
         }
 
         // fill in white's pawns
         for (int i = 0x10; i < 0x18; ++i) {
-            board[i] = new Pawn(Color.WHITE);
-        }
-
-        board[0x00] = new Rook(Color.WHITE);
-        board[0x01] = new Knight(Color.WHITE);
-        board[0x02] = new Bishop(Color.WHITE);
-        board[0x03] = new Queen(Color.WHITE);
-        board[0x04] = new King(Color.WHITE);
-        board[0x05] = new Bishop(Color.WHITE);
-        board[0x06] = new Knight(Color.WHITE);
-        board[0x07] = new Rook(Color.WHITE);
-
-        // add pieces
-        int w = 0;
-        int b = 0;
-        for (int i = 0x00; i < board.length; ++i) {
-            Piece p = board[i];
-
-            if (p != null) {
-                if (p.getColor().equals(Color.WHITE)) {
-                    whitePieces[w++] = i;
-                } else {
-                    blackPieces[b++] = i;
-                }
-            }
+            board[i] = Pieces.WHITE_PAWN;
         }
 
-        Arrays.sort(whitePieces);
-        Arrays.sort(blackPieces);
+        board[0x00] = Pieces.WHITE_ROOK;
+        board[0x01] = Pieces.WHITE_KNIGHT;
+        board[0x02] = Pieces.WHITE_BISHOP;
+        board[0x03] = Pieces.WHITE_QUEEN;
+        board[0x04] = Pieces.WHITE_KING;
+        board[0x05] = Pieces.WHITE_BISHOP;
+        board[0x06] = Pieces.WHITE_KNIGHT;
+        board[0x07] = Pieces.WHITE_ROOK;
 
         // set the kings
         blackKing = 0x74;
         whiteKing = 0x04;
 
         // set the castles
-        whiteKingCastle = whiteQueenCastle = blackKingCastle = blackQueenCastle = true;
+        castling = WHITE_KING_CASTLE | WHITE_QUEEN_CASTLE | BLACK_KING_CASTLE | BLACK_QUEEN_CASTLE;
 
         // set the en passe
         enPassant = Board.MAX_SQUARE;
 
         // set the moves to 1
         moves = 1;
-        
-        // compute the hash code
-        computeHashCode();
+
+        computePieceLists();
+        computeBitboards();
     }
 
     /**
@@ -164,22 +229,95 @@ public final class Board implements Cloneable {
     public Board(Board board) {
         this.board = Arrays.copyOf(board.board, board.board.length);
 
-        this.whitePieces = Arrays.copyOf(board.whitePieces, board.whitePieces.length);
-        this.whiteKing = board.whiteKing;
+        this.pieceLists = new int[Pieces.CODES][];
+
+        for (int piece = 0; piece < Pieces.CODES; ++piece) {
+            this.pieceLists[piece] = Arrays.copyOf(board.pieceLists[piece], MAX_PIECES);
+        }
+
+        this.pieceCounts = Arrays.copyOf(board.pieceCounts, Pieces.CODES);
+        this.pieceIndex = Arrays.copyOf(board.pieceIndex, MAX_SQUARE);
 
-        this.blackPieces = Arrays.copyOf(board.blackPieces, board.blackPieces.length);
+        this.whiteKing = board.whiteKing;
         this.blackKing = board.blackKing;
 
-        this.hashCode = board.hashCode;
+        this.bitboards = new long[][] { Arrays.copyOf(board.bitboards[Bitboards.WHITE], Bitboards.PIECE_TYPES),
+                                        Arrays.copyOf(board.bitboards[Bitboards.BLACK], Bitboards.PIECE_TYPES) };
+        this.colorBitboards = Arrays.copyOf(board.colorBitboards, 2);
+        this.occupied = board.occupied;
+        this.checkers = board.checkers;
+
+        this.zobristKey = board.zobristKey;
+        this.pawnKey = board.pawnKey;
 
-        this.whiteKingCastle = board.whiteKingCastle;
-        this.whiteQueenCastle = board.whiteQueenCastle;
-        this.blackKingCastle = board.blackKingCastle;
-        this.blackQueenCastle = board.blackQueenCastle;
+        this.castling = board.castling;
 
         this.enPassant = board.enPassant;
+        this.activeColor = board.activeColor;
+
+        this.materialScore = board.materialScore;
+        this.positionScore = board.positionScore;
+        this.halfMoveClock = board.halfMoveClock;
         
         this.moves = board.moves;
+
+        this.undoMoves = Arrays.copyOf(board.undoMoves, board.undoMoves.length);
+        this.undoCaptured = Arrays.copyOf(board.undoCaptured, board.undoCaptured.length);
+        this.undoCastling = Arrays.copyOf(board.undoCastling, board.undoCastling.length);
+        this.undoEnPassant = Arrays.copyOf(board.undoEnPassant, board.undoEnPassant.length);
+        this.undoHalfMoveClock = Arrays.copyOf(board.undoHalfMoveClock, board.undoHalfMoveClock.length);
+        this.undoZobristKeys = Arrays.copyOf(board.undoZobristKeys, board.undoZobristKeys.length);
+        this.undoPawnKeys = Arrays.copyOf(board.undoPawnKeys, board.undoPawnKeys.length);
+        this.undoCheckers = Arrays.copyOf(board.undoCheckers, board.undoCheckers.length);
+        this.undoMaterialScores = Arrays.copyOf(board.undoMaterialScores, board.undoMaterialScores.length);
+        this.undoPositionScores = Arrays.copyOf(board.undoPositionScores, board.undoPositionScores.length);
+        this.undoCount = board.undoCount;
+    }
+
+    /**
+     * Copies another board's position into this one without allocating, for copy-make searches.
+     *
+     * Only the position is copied: the squares, piece lists, bitboards, keys and flags, about 1 KB of
+     * which the piece index by square is half. The undo history is not, so this board can't undo past
+     * the copied position, and each search thread can make moves on its own copy while the original
+     * is left alone. Use {@link #makeMoveWithoutUndo(int)} to make the next move on the copy.
+     *
+     * @param board the board to copy from.
+     */
+    public void copyFrom(Board board) {
+        System.arraycopy(board.board, 0, this.board, 0, MAX_SQUARE);
+
+        for (int piece = 0; piece < Pieces.CODES; ++piece) {
+            System.arraycopy(board.pieceLists[piece], 0, this.pieceLists[piece], 0, board.pieceCounts[piece]);
+        }
+
+        System.arraycopy(board.pieceCounts, 0, this.pieceCounts, 0, Pieces.CODES);
+        System.arraycopy(board.pieceIndex, 0, this.pieceIndex, 0, MAX_SQUARE);
+
+        this.whiteKing = board.whiteKing;
+        this.blackKing = board.blackKing;
+
+        System.arraycopy(board.bitboards[Bitboards.WHITE], 0, this.bitboards[Bitboards.WHITE], 0, Bitboards.PIECE_TYPES);
+        System.arraycopy(board.bitboards[Bitboards.BLACK], 0, this.bitboards[Bitboards.BLACK], 0, Bitboards.PIECE_TYPES);
+        this.colorBitboards[Bitboards.WHITE] = board.colorBitboards[Bitboards.WHITE];
+        this.colorBitboards[Bitboards.BLACK] = board.colorBitboards[Bitboards.BLACK];
+        this.occupied = board.occupied;
+        this.checkers = board.checkers;
+        this.checkInfoValid = false;
+
+        this.zobristKey = board.zobristKey;
+        this.pawnKey = board.pawnKey;
+
+        this.castling = board.castling;
+        this.enPassant = board.enPassant;
+        this.activeColor = board.activeColor;
+
+        this.materialScore = board.materialScore;
+        this.positionScore = board.positionScore;
+        this.halfMoveClock = board.halfMoveClock;
+        this.moves = board.moves;
+
+        this.undoCount = 0;
     }
 
     /**
@@ -190,32 +328,22 @@ public final class Board implements Cloneable {
      * @param genericBoard the generic board to construct from.
      */
     public Board(GenericBoard genericBoard) {
-        board = new Piece[MAX_SQUARE];
+        board = new byte[MAX_SQUARE];
 
-        blackPieces = new int[16];
-        whitePieces = new int[16];
-        int w = 0;
-        int b = 0;
+        pieceLists = new int[Pieces.CODES][MAX_PIECES];
+        pieceCounts = new int[Pieces.CODES];
+        pieceIndex = new int[MAX_SQUARE];
 
-        Arrays.fill(whitePieces, Board.MAX_SQUARE);
-        Arrays.fill(blackPieces, Board.MAX_SQUARE);
+        bitboards = new long[2][Bitboards.PIECE_TYPES];
+        colorBitboards = new long[2];
 
         // Initialize the board
         for (GenericPosition position : GenericPosition.values()) {
             GenericPiece genericPiece = genericBoard.getPiece(position);
             if (genericPiece != null) {
-                int file = Arrays.asList(GenericFile.values()).indexOf(position.file);
-                int rank = Arrays.asList(GenericRank.values()).indexOf(position.rank);
-
-                int intPosition = rank * 16 + file;
+                int intPosition = toSquare(position);
 
-                board[intPosition] = AbstractPiece.makePiece(genericPiece.toChar());
-
-                if (genericPiece.color == GenericColor.WHITE) {
-                    whitePieces[w++] = intPosition;
-                } else {
-                    blackPieces[b++] = intPosition;
-                }
+                board[intPosition] = (byte) Pieces.fromChar(genericPiece.toChar());
 
                 if (genericPiece == GenericPiece.BLACKKING) {
                     blackKing = intPosition;
@@ -225,9 +353,6 @@ public final class Board implements Cloneable {
             }
         }
 
-        Arrays.sort(whitePieces);
-        Arrays.sort(blackPieces);
-
         if (genericBoard.getActiveColor().equals(GenericColor.WHITE)) {
             activeColor = Color.WHITE;
         } else {
@@ -237,36 +362,210 @@ public final class Board implements Cloneable {
 
         // set the castling
         if (genericBoard.getCastling(GenericColor.WHITE, GenericCastling.KINGSIDE) != null) {
-            whiteKingCastle = true;
+            castling |= WHITE_KING_CASTLE;
         }
 
         if (genericBoard.getCastling(GenericColor.WHITE, GenericCastling.QUEENSIDE) != null) {
-            whiteQueenCastle = true;
+            castling |= WHITE_QUEEN_CASTLE;
         }
 
         if (genericBoard.getCastling(GenericColor.BLACK, GenericCastling.KINGSIDE) != null) {
-            blackKingCastle = true;
+            castling |= BLACK_KING_CASTLE;
         }
 
         if (genericBoard.getCastling(GenericColor.BLACK, GenericCastling.QUEENSIDE) != null) {
-            blackQueenCastle = true;
+            castling |= BLACK_QUEEN_CASTLE;
         }
 
         // set the en passe
         final GenericPosition ep = genericBoard.getEnPassant();
 
         if (ep != null) {
-            int file = Arrays.asList(GenericFile.values()).indexOf(ep.file);
-            int rank = Arrays.asList(GenericRank.values()).indexOf(ep.rank);
-
-            this.enPassant = rank * 16 + file;
+            this.enPassant = toSquare(ep);
         }
         
         // set the moves
+        halfMoveClock = genericBoard.getHalfMoveClock();
         moves = genericBoard.getFullMoveNumber();
 
-        // compute the hash code
-        computeHashCode();
+        computePieceLists();
+        computeBitboards();
+    }
+
+    /**
+     * Creates a board from a FEN string, see {@link #setFEN(CharSequence)}.
+     * @param fen the FEN string.
+     * @return the new board.
+     */
+    public static Board fromFEN(CharSequence fen) {
+        final Board ret = new Board();
+
+        ret.setFEN(fen);
+
+        return ret;
+    }
+
+    /**
+     * Sets up the board from a FEN string, parsing straight into the board's arrays.
+     *
+     * The half move clock and move number are optional, as they are left off in EPD. The undo
+     * history is cleared.
+     *
+     * @param fen the FEN string.
+     * @throws IllegalArgumentException if the FEN string can't be parsed, or doesn't have exactly one king for each side.
+     */
+    public void setFEN(CharSequence fen) {
+        final int end = skipSpaces(fen, parsePosition(fen, 0));
+
+        if (end != fen.length()) {
+            throw new IllegalArgumentException("Unexpected text at the end of the FEN: " + fen);
+        }
+    }
+
+    /**
+     * Parses the position at the start of a FEN or EPD line.
+     * @param fen the text to parse.
+     * @param start the index to start parsing at.
+     * @return the index just past the position, where the EPD operations start.
+     */
+    int parsePosition(CharSequence fen, int start) {
+        Arrays.fill(board, (byte) Pieces.EMPTY);
+        whiteKing = blackKing = MAX_SQUARE;
+
+        int i = skipSpaces(fen, start);
+        int square = 0x70;
+
+        // the pieces from a8 to h1, a rank at a time
+        for ( ; i < fen.length() && fen.charAt(i) != ' '; ++i) {
+            final char c = fen.charAt(i);
+
+            if (c == '/') {
+                if ((square & 0x0f) != 8 || square < 0x10) {
+                    throw new IllegalArgumentException("Rank doesn't have 8 squares: " + fen);
+                }
+
+                square = (square & 0xf0) - 0x10;
+            } else if (c >= '1' && c <= '8') {
+                square += c - '0';
+            } else {
+                final int piece = Pieces.fromChar(c);
+
+                if (piece == Pieces.EMPTY || (square & 0x88) != 0) {
+                    throw new IllegalArgumentException("Illegal piece placement '" + c + "': " + fen);
+                }
+
+                board[square] = (byte) piece;
+
+                if (piece == Pieces.WHITE_KING) {
+                    if (whiteKing != MAX_SQUARE) {
+                        throw new IllegalArgumentException("More than one white king: " + fen);
+                    }
+
+                    whiteKing = square;
+                } else if (piece == Pieces.BLACK_KING) {
+                    if (blackKing != MAX_SQUARE) {
+                        throw new IllegalArgumentException("More than one black king: " + fen);
+                    }
+
+                    blackKing = square;
+                }
+
+                ++square;
+            }
+        }
+
+        if (square != 0x08) {
+            throw new IllegalArgumentException("FEN doesn't have 8 ranks: " + fen);
+        }
+
+        // the move generator needs a king for each side
+        if (whiteKing == MAX_SQUARE || blackKing == MAX_SQUARE) {
+            throw new IllegalArgumentException("FEN doesn't have a king for each side: " + fen);
+        }
+
+        // the side to move
+        i = skipSpaces(fen, i);
+
+        if (i >= fen.length() || (fen.charAt(i) != 'w' && fen.charAt(i) != 'b')) {
+            throw new IllegalArgumentException("Missing the side to move: " + fen);
+        }
+
+        activeColor = fen.charAt(i++) == 'w' ? Color.WHITE : Color.BLACK;
+
+        // the castling rights
+        i = skipSpaces(fen, i);
+        castling = 0;
+
+        if (i < fen.length() && fen.charAt(i) == '-') {
+            ++i;
+        } else {
+            for ( ; i < fen.length() && fen.charAt(i) != ' '; ++i) {
+                switch (fen.charAt(i)) {
+                case 'K': castling |= WHITE_KING_CASTLE; break;
+                case 'Q': castling |= WHITE_QUEEN_CASTLE; break;
+                case 'k': castling |= BLACK_KING_CASTLE; break;
+                case 'q': castling |= BLACK_QUEEN_CASTLE; break;
+                default:
+                    throw new IllegalArgumentException("Illegal castling rights: " + fen);
+                }
+            }
+        }
+
+        // the en passant square
+        i = skipSpaces(fen, i);
+        enPassant = MAX_SQUARE;
+
+        if (i < fen.length() && fen.charAt(i) == '-') {
+            ++i;
+        } else if (i + 1 < fen.length() && fen.charAt(i) >= 'a' && fen.charAt(i) <= 'h' && fen.charAt(i + 1) >= '1' && fen.charAt(i + 1) <= '8') {
+            enPassant = rowColToSquare(fen.charAt(i + 1) - '1', fen.charAt(i) - 'a');
+            i += 2;
+        } else {
+            throw new IllegalArgumentException("Illegal en passant square: " + fen);
+        }
+
+        // the clocks, which EPD leaves off
+        halfMoveClock = 0;
+        moves = 1;
+        i = skipSpaces(fen, i);
+
+        if (i < fen.length() && Character.isDigit(fen.charAt(i))) {
+            for (halfMoveClock = 0; i < fen.length() && Character.isDigit(fen.charAt(i)); ++i) {
+                halfMoveClock = halfMoveClock * 10 + fen.charAt(i) - '0';
+            }
+
+            i = skipSpaces(fen, i);
+
+            if (i < fen.length() && Character.isDigit(fen.charAt(i))) {
+                for (moves = 0; i < fen.length() && Character.isDigit(fen.charAt(i)); ++i) {
+                    moves = moves * 10 + fen.charAt(i) - '0';
+                }
+            }
+        }
+
+        undoCount = 0;
+        computePieceLists();
+        computeBitboards();
+        checkInfoValid = false;
+
+        return i;
+    }
+
+    static int skipSpaces(CharSequence text, int index) {
+        while (index < text.length() && text.charAt(index) == ' ') {
+            ++index;
+        }
+
+        return index;
+    }
+
+    /**
+     * Converts a jcpi position into a 0x88 square.
+     * @param position the position.
+     * @return the square.
+     */
+    public static int toSquare(GenericPosition position) {
+        return position.rank.ordinal() * 16 + position.file.ordinal();
     }
 
     @Override
@@ -278,16 +577,28 @@ public final class Board implements Cloneable {
         final Board arg = (Board) obj;
 
         // the boards are the same if the moves are the same and the boards are the same
-        return arg.moves == moves && Arrays.equals(arg.board, this.board);
+        return arg.zobristKey == zobristKey && arg.moves == moves && Arrays.equals(arg.board, this.board);
     }
 
     @Override
     public int hashCode() {
-        if(hashCode == 0) {
-            computeHashCode();
-        }
+        return (int)(zobristKey ^ (zobristKey >>> 32));
+    }
+
+    /**
+     * Returns the 64-bit Zobrist key of the position, including the side to move, castling and en passant.
+     * @return the Zobrist key.
+     */
+    public long getZobristKey() {
+        return zobristKey;
+    }
 
-        return hashCode;
+    /**
+     * Returns a Zobrist key computed from the pawns only, for use with pawn structure caches.
+     * @return the pawn Zobrist key.
+     */
+    public long getPawnKey() {
+        return pawnKey;
     }
 
     /**
@@ -304,16 +615,193 @@ public final class Board implements Cloneable {
     }
 
     /**
-     * Computes a hash code for the board.
+     * Computes all of the bitboards and Zobrist keys from scratch using the board array.
      */
-    private void computeHashCode() {
-        this.hashCode = 0;
-        
-        for (int i = 0; i < whitePieces.length; ++i) {
-            this.hashCode ^= (whitePieces[i] << (16 + i / 2)) | (blackPieces[i] << (i / 2));
+    private void computeBitboards() {
+        Arrays.fill(bitboards[Bitboards.WHITE], 0L);
+        Arrays.fill(bitboards[Bitboards.BLACK], 0L);
+        Arrays.fill(colorBitboards, 0L);
+        occupied = 0L;
+        zobristKey = pawnKey = 0L;
+        materialScore = positionScore = 0;
+
+        for(int i=0; i < MAX_SQUARE; ++i) {
+            if(board[i] != Pieces.EMPTY) {
+                togglePiece(board[i], i);
+            }
         }
-        
-        // TODO: include moves in this hash code
+
+        zobristKey ^= stateKey();
+        checkers = computeCheckers();
+    }
+
+    /**
+     * Finds the pieces giving check to the side to move, or none if there's no king on the board.
+     */
+    private long computeCheckers() {
+        final int kingSquare = activeColor.equals(Color.WHITE) ? whiteKing : blackKing;
+
+        if (kingSquare == MAX_SQUARE || board[kingSquare] == Pieces.EMPTY) {
+            return 0L;
+        }
+
+        return attackers(Bitboards.toIndex(kingSquare), Bitboards.colorIndex(activeColor) ^ 1, occupied);
+    }
+
+    /**
+     * Builds the piece lists from scratch using the board array.
+     */
+    private void computePieceLists() {
+        Arrays.fill(pieceCounts, 0);
+
+        for(int i=0; i < MAX_SQUARE; ++i) {
+            if(board[i] != Pieces.EMPTY) {
+                addPiece(board[i], i);
+            }
+        }
+    }
+
+    /**
+     * Appends a piece to the end of its list.
+     */
+    private void addPiece(int piece, int square) {
+        pieceIndex[square] = pieceCounts[piece];
+        pieceLists[piece][pieceCounts[piece]++] = square;
+    }
+
+    /**
+     * Removes a piece from its list by moving the last piece in the list into its slot.
+     */
+    private void removePiece(int piece, int square) {
+        final int last = pieceLists[piece][--pieceCounts[piece]];
+
+        pieceLists[piece][pieceIndex[square]] = last;
+        pieceIndex[last] = pieceIndex[square];
+    }
+
+    /**
+     * Updates the square of a piece in its list.
+     */
+    private void movePiece(int piece, int fromSquare, int toSquare) {
+        pieceLists[piece][pieceIndex[fromSquare]] = toSquare;
+        pieceIndex[toSquare] = pieceIndex[fromSquare];
+    }
+
+    /**
+     * Adds or removes a piece from the bitboards and Zobrist keys.
+     * @param piece the code of the piece being added or removed.
+     * @param square the square the piece is on.
+     */
+    private void togglePiece(int piece, int square) {
+        final int index = Bitboards.toIndex(square);
+        final int color = Pieces.colorOf(piece);
+        final int type = Pieces.typeOf(piece);
+
+        toggleBits(piece, square);
+
+        zobristKey ^= Zobrist.PIECES[color][type][index];
+
+        if(type == Bitboards.PAWN) {
+            pawnKey ^= Zobrist.PIECES[color][type][index];
+        }
+
+        // the bit is set again if the piece was just added
+        final int sign = ((occupied >>> index) & 1) == (color == Bitboards.WHITE ? 1 : 0) ? 1 : -1;
+
+        materialScore += sign * Pieces.getValue(piece);
+        positionScore += sign * Pieces.getPositionValue(piece, square);
+    }
+
+    /**
+     * Adds or removes a piece from the bitboards only; used when undoing a move as the keys and
+     * evaluation terms are restored from the undo stack.
+     */
+    private void toggleBits(int piece, int square) {
+        final long bit = Bitboards.squareBit(square);
+        final int color = Pieces.colorOf(piece);
+
+        bitboards[color][Pieces.typeOf(piece)] ^= bit;
+        colorBitboards[color] ^= bit;
+        occupied ^= bit;
+    }
+
+    /**
+     * Computes the part of the Zobrist key that isn't the pieces: side to move, castling and en passant.
+     * XOR this out before changing any of those fields, and back in afterwards.
+     * @return the Zobrist key for the board's state.
+     */
+    private long stateKey() {
+        long ret = activeColor == Color.BLACK ? Zobrist.BLACK_TO_MOVE : 0L;
+
+        ret ^= Zobrist.CASTLING[castling];
+
+        if(enPassant != MAX_SQUARE) {
+            ret ^= Zobrist.EN_PASSANT[squareToCol(enPassant)];
+        }
+
+        return ret;
+    }
+
+    /**
+     * @return the castling rights packed into a mask of the *_CASTLE constants.
+     */
+    public int getCastlingMask() {
+        return castling;
+    }
+
+    private void setCastlingMask(int mask) {
+        castling = mask;
+    }
+
+    /**
+     * Returns the material on the board, kept up to date as moves are made.
+     * @param color the color to score for.
+     * @return the value of the color's pieces minus the value of the other color's pieces.
+     */
+    public int getMaterialScore(Color color) {
+        return color.equals(Color.WHITE) ? materialScore : -materialScore;
+    }
+
+    /**
+     * Returns the position values of the pieces on the board, kept up to date as moves are made.
+     * @param color the color to score for.
+     * @return the color's piece and position values minus the other color's.
+     */
+    public int getPositionScore(Color color) {
+        return color.equals(Color.WHITE) ? positionScore : -positionScore;
+    }
+
+    /**
+     * @return the number of moves since the last capture or pawn move.
+     */
+    public int getHalfMoveClock() {
+        return halfMoveClock;
+    }
+
+    /**
+     * Returns the occupancy of one type of piece for a color.
+     * @param color the color of the pieces.
+     * @param type the type of piece, one of the types in {@link Bitboards}.
+     * @return a bitboard of the squares occupied by those pieces.
+     */
+    public long getBitboard(Color color, int type) {
+        return bitboards[Bitboards.colorIndex(color)][type];
+    }
+
+    /**
+     * Returns the occupancy of all the pieces of a color.
+     * @param color the color of the pieces.
+     * @return a bitboard of the squares occupied by that color.
+     */
+    public long getColorBitboard(Color color) {
+        return colorBitboards[Bitboards.colorIndex(color)];
+    }
+
+    /**
+     * @return a bitboard of all the occupied squares.
+     */
+    public long getOccupied() {
+        return occupied;
     }
 
     public static int squareToRow(int square) {
@@ -328,14 +816,77 @@ public final class Board implements Cloneable {
         return (row << 4) + col;
     }
 
+    /**
+     * Packs a move into 16 bits: the from square's bit index in bits 0-5, the to square's in bits 6-11
+     * and the FLAG_ values in bits 12-15.
+     *
+     * Only the promotion flag is set from the arguments; {@link #makeMove(int)} works out the rest from
+     * the board, and {@link #createMove(int, int, char)} returns the move with all of its flags.
+     *
+     * @param fromSquare the square the piece moves from.
+     * @param toSquare the square the piece moves to.
+     * @param promotePiece the piece a pawn promotes to, see {@link AbstractPiece#pieceToPromoteValue(char)}.
+     * @return the move.
+     */
     public static int createMoveValue(int fromSquare, int toSquare, char promotePiece) {
         final int pieceValue = AbstractPiece.pieceToPromoteValue(promotePiece);
 
-        return fromSquare + (toSquare << 8) + (pieceValue << 16);
+        return packMove(fromSquare, toSquare, pieceValue == 0 ? 0 : promotionFlags(pieceValue));
     }
 
     public static int createMoveValue(int fromSquare, int toSquare) {
-        return createMoveValue(fromSquare, toSquare, '-');
+        return packMove(fromSquare, toSquare, 0);
+    }
+
+    private static int packMove(int fromSquare, int toSquare, int flags) {
+        return Bitboards.toIndex(fromSquare) | (Bitboards.toIndex(toSquare) << 6) | flags;
+    }
+
+    private static int promotionFlags(int promoteValue) {
+        return FLAG_PROMOTION | ((promoteValue - 1) << 12);
+    }
+
+    /**
+     * Creates a move with the flags for the current position.
+     * @param fromSquare the square the piece moves from.
+     * @param toSquare the square the piece moves to.
+     * @param promotePiece the piece a pawn promotes to, or '-'.
+     * @return the move, as the move generator would create it.
+     */
+    public int createMove(int fromSquare, int toSquare, char promotePiece) {
+        return flagMove(createMoveValue(fromSquare, toSquare, promotePiece));
+    }
+
+    /**
+     * Works out the flags of a move from the board, ignoring any flags it already has.
+     */
+    private int flagMove(int move) {
+        final int fromSquare = getFromSquare(move);
+        final int toSquare = getToSquare(move);
+        final int promoteValue = getPromoteValue(move);
+        int flags = board[toSquare] != Pieces.EMPTY ? FLAG_CAPTURE : 0;
+
+        switch (Pieces.typeOf(board[fromSquare])) {
+        case Bitboards.PAWN:
+            if (promoteValue != 0) {
+                flags |= promotionFlags(promoteValue);
+            } else if (toSquare == enPassant) {
+                flags = FLAG_EN_PASSANT;
+            } else if (toSquare - fromSquare == 0x20 || fromSquare - toSquare == 0x20) {
+                flags = FLAG_DOUBLE_PUSH;
+            }
+            break;
+
+        case Bitboards.KING:
+            if (toSquare - fromSquare == 2) {
+                flags = FLAG_KING_CASTLE;
+            } else if (fromSquare - toSquare == 2) {
+                flags = FLAG_QUEEN_CASTLE;
+            }
+            break;
+        }
+
+        return packMove(fromSquare, toSquare, flags);
     }
 
     /**
@@ -362,8 +913,8 @@ public final class Board implements Cloneable {
         final int from = getFromSquare(move);
         final int to = getToSquare(move);
 
-        final Piece fromPiece = board[from];
-        final Piece toPiece = board[to];
+        final Piece fromPiece = getPiece(from);
+        final Piece toPiece = getPiece(to);
 
         final StringBuilder sb = new StringBuilder();
 
@@ -388,37 +939,68 @@ public final class Board implements Cloneable {
     }
 
     public static int getFromSquare(int move) {
-        return move & 0xFF;
+        return Bitboards.toSquare(move & 0x3F);
     }
 
     public static int getToSquare(int move) {
-        return (move >> 8) & 0xFF;
+        return Bitboards.toSquare((move >> 6) & 0x3F);
     }
 
+    /**
+     * @return the promote value of the move, see {@link AbstractPiece#pieceToPromoteValue(char)}, or 0 if it isn't a promotion.
+     */
     public static int getPromoteValue(int move) {
-        return move >> 16;
+        return (move & FLAG_PROMOTION) == 0 ? 0 : ((move >> 12) & 0x03) + 1;
     }
 
-    public Piece getPiece(int square) {
-        return this.board[square];
+    /**
+     * @return the FLAG_ bits of the move.
+     */
+    public static int getFlags(int move) {
+        return move & FLAGS;
+    }
+
+    /**
+     * @return true if the move captures a piece, including en passant captures.
+     */
+    public static boolean isCapture(int move) {
+        return (move & FLAG_CAPTURE) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & FLAG_PROMOTION) != 0;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (move & FLAGS) == FLAG_EN_PASSANT;
+    }
+
+    public static boolean isCastle(int move) {
+        return (move & (FLAGS & ~FLAG_DOUBLE_PUSH)) == FLAG_KING_CASTLE;
+    }
+
+    /**
+     * Returns the shared view of the piece on a square.
+     * @param square the square.
+     * @return the piece, or null if the square is empty.
+     */
+    public Piece getPiece(int square) {
+        return Pieces.toPiece(this.board[square]);
     }
 
-    public Piece[] getBoard() {
-        return board;
+    /**
+     * Returns the code of the piece on a square, see {@link Pieces}.
+     * @param square the square.
+     * @return the piece's code, or {@link Pieces#EMPTY}.
+     */
+    public int getPieceCode(int square) {
+        return this.board[square];
     }
     
     public int getMoves() {
         return moves;
     }
 
-    public void setState(State boardState) {
-        this.whiteKingCastle = boardState.whiteKingCastle;
-        this.whiteQueenCastle = boardState.whiteQueenCastle;
-        this.blackKingCastle = boardState.blackKingCastle;
-        this.blackQueenCastle = boardState.blackQueenCastle;
-        this.enPassant = boardState.enPassant;
-    }
-
     /**
      * @return the enPassant
      */
@@ -427,30 +1009,27 @@ public final class Board implements Cloneable {
     }
 
     public boolean canKingCastle(Color color) {
-        // cannot castle out of check
-        if(isInCheck(color)) {
+        final int c = Bitboards.colorIndex(color);
+        final int king = c == Bitboards.WHITE ? 0x04 : 0x74;
+
+        // the rights and empty squares are cheap, so only look for attacks if they allow it
+        if ((castling & (c == Bitboards.WHITE ? WHITE_KING_CASTLE : BLACK_KING_CASTLE)) == 0 || (occupied & KING_SIDE_EMPTY[c]) != 0) {
             return false;
         }
 
-        if (color.equals(Color.WHITE)) {
-            // need to make sure boths spots are open, and that the King won't move through a spot that would put it in check
-            return whiteKingCastle && board[0x05] == null && board[0x06] == null && (!isSquareAttacked(Color.WHITE, 0x05));
-        } else {
-            return blackKingCastle && board[0x75] == null && board[0x76] == null && (!isSquareAttacked(Color.BLACK, 0x75));
-        }
+        // cannot castle out of, through or into check
+        return !isSquareAttacked(color, king) && !isSquareAttacked(color, king + 1) && !isSquareAttacked(color, king + 2);
     }
 
     public boolean canQueenCastle(Color color) {
-        // cannot castle out of check
-        if(isInCheck(color)) {
+        final int c = Bitboards.colorIndex(color);
+        final int king = c == Bitboards.WHITE ? 0x04 : 0x74;
+
+        if ((castling & (c == Bitboards.WHITE ? WHITE_QUEEN_CASTLE : BLACK_QUEEN_CASTLE)) == 0 || (occupied & QUEEN_SIDE_EMPTY[c]) != 0) {
             return false;
         }
 
-        if (color.equals(Color.WHITE)) {
-            return whiteQueenCastle && board[0x01] == null && board[0x02] == null && board[0x03] == null && (!isSquareAttacked(Color.WHITE, 0x02)) && (!isSquareAttacked(Color.WHITE, 0x03));
-        } else {
-            return blackQueenCastle && board[0x71] == null && board[0x72] == null && board[0x73] == null && (!isSquareAttacked(Color.BLACK, 0x72)) && (!isSquareAttacked(Color.BLACK, 0x73));
-        }
+        return !isSquareAttacked(color, king) && !isSquareAttacked(color, king - 1) && !isSquareAttacked(color, king - 2);
     }
 
     public Color getActiveColor() {
@@ -461,20 +1040,20 @@ public final class Board implements Cloneable {
      * Removes all the pieces from the board. Useful for debugging.
      */
     public void clearBoard() {
-        Arrays.fill(whitePieces, Board.MAX_SQUARE);
+        Arrays.fill(pieceCounts, 0);
         whiteKing = Board.MAX_SQUARE;
-
-        Arrays.fill(blackPieces, Board.MAX_SQUARE);
         blackKing = Board.MAX_SQUARE;
 
-        Arrays.fill(board, null);
+        Arrays.fill(board, (byte) Pieces.EMPTY);
 
-        whiteKingCastle = whiteQueenCastle = false;
-        blackKingCastle = blackQueenCastle = false;
+        castling = 0;
         enPassant = Board.MAX_SQUARE;
+        halfMoveClock = 0;
+        undoCount = 0;
 
-        // compute the new hash code
-        computeHashCode();
+        // compute the new bitboards and keys
+        computeBitboards();
+        checkInfoValid = false;
     }
 
     @Override
@@ -485,9 +1064,9 @@ public final class Board implements Cloneable {
             sb.append(r + 1);
             sb.append(" ");
             for (int c = 0; c < 8; ++c) {
-                Piece p = board[(r << 4) + c];
+                final int p = board[(r << 4) + c];
 
-                sb.append(p == null ? "-" : p.toString());
+                sb.append(p == Pieces.EMPTY ? '-' : Pieces.toChar(p));
                 sb.append(" ");
             }
             sb.append(LINE_BREAK);
@@ -505,8 +1084,15 @@ public final class Board implements Cloneable {
     }
 
     public String toFEN() {
-        final StringBuilder sb = new StringBuilder();
+        return toFEN(new StringBuilder()).toString();
+    }
 
+    /**
+     * Appends the FEN string for the board to a buffer, without building any other strings.
+     * @param sb the buffer to append to.
+     * @return the buffer.
+     */
+    public StringBuilder toFEN(StringBuilder sb) {
         // ref: http://en.wikipedia.org/wiki/Forsyth%E2%80%93Edwards_Notation
 
         // go through the pieces
@@ -514,16 +1100,16 @@ public final class Board implements Cloneable {
             int blankCount = 0;
 
             for(int i=start; i < start+8; ++i) {
-                final Piece p = board[i];
+                final int p = board[i];
 
-                if(p == null) {
+                if(p == Pieces.EMPTY) {
                     ++blankCount;
                 } else if(blankCount != 0) {
                     sb.append(blankCount);
-                    sb.append(p.toString());
+                    sb.append(Pieces.toChar(p));
                     blankCount = 0;
                 } else {
-                    sb.append(p.toString());
+                    sb.append(Pieces.toChar(p));
                 }
             }
 
@@ -531,889 +1117,1237 @@ public final class Board implements Cloneable {
                 sb.append(blankCount);
 
             if(start != 0x00)
-                sb.append("/");
+                sb.append('/');
         }
 
         // get the turn
         sb.append(' ');
-        sb.append(this.getActiveColor().toFENString());
+        sb.append(activeColor.equals(Color.WHITE) ? 'w' : 'b');
 
         // get the castling possibilities
         sb.append(' ');
-        if(this.whiteKingCastle) sb.append('K');
-        if(this.whiteQueenCastle) sb.append('Q');
-        if(this.blackKingCastle) sb.append('k');
-        if(this.blackQueenCastle) sb.append('q');
+        if((castling & WHITE_KING_CASTLE) != 0) sb.append('K');
+        if((castling & WHITE_QUEEN_CASTLE) != 0) sb.append('Q');
+        if((castling & BLACK_KING_CASTLE) != 0) sb.append('k');
+        if((castling & BLACK_QUEEN_CASTLE) != 0) sb.append('q');
         if(sb.charAt(sb.length()-1) == ' ') sb.append('-'); // if we haven't appended, then put the -
 
         // get the en passant
         sb.append(' ');
         if(this.enPassant != MAX_SQUARE) {
-            sb.append(Board.squareToString(this.enPassant));
+            sb.append((char) ('a' + (enPassant & 0x0f)));
+            sb.append((char) ('1' + (enPassant >> 4)));
         } else {
             sb.append('-');
         }
 
-        // we punt on half moves for now
         sb.append(' ');
-        sb.append(0);
+        sb.append(halfMoveClock);
 
         sb.append(' ');
         sb.append(getMoves());
 
-        return sb.toString();
+        return sb;
     }
 
     /**
      * Given the current board's state, generate all of the possible moves.
-     * @return an array containing all possible moves for the board.
+     * @return an array containing all possible moves for the board, padded with NULL_MOVE.
      */
     public int[] generateAllMoves() {
-        final int[] pieces = activeColor.equals(Color.BLACK) ? blackPieces : whitePieces;
-        final int[] allMoves = new int[161]; // make space for all possible moves
+        final int[] allMoves = new int[MAX_MOVES];
+        final int count = generateAllMoves(allMoves);
+
+        Arrays.fill(allMoves, count, allMoves.length, NULL_MOVE);
+        return allMoves;
+    }
+
+    /**
+     * Given the current board's state, generate all of the possible moves into a buffer supplied by the caller.
+     *
+     * Only legal moves are generated: the pieces giving check and the pieces pinned to the king are
+     * found once, and each piece's moves are masked against them. Only king moves and en passant
+     * captures need a full test of the king's safety.
+     *
+     * @param moves the buffer to fill, at least {@link #MAX_MOVES} long.
+     * @return the number of moves placed at the start of the buffer.
+     */
+    public int generateAllMoves(int[] moves) {
+        return generateMoves(CAPTURES | QUIETS, moves);
+    }
+
+    /**
+     * Generates the legal captures, en passant captures and promotions into a buffer supplied by the caller.
+     *
+     * Together with {@link #generateQuiets(int[])} this covers every legal move, so a search can try
+     * the captures first and only pay for the quiet moves if it doesn't get a cutoff.
+     *
+     * @param moves the buffer to fill, at least {@link #MAX_MOVES} long.
+     * @return the number of moves placed at the start of the buffer.
+     */
+    public int generateCaptures(int[] moves) {
+        return generateMoves(CAPTURES, moves);
+    }
+
+    /**
+     * Generates the legal moves that aren't captures or promotions, including castling, into a buffer supplied by the caller.
+     * @param moves the buffer to fill, at least {@link #MAX_MOVES} long.
+     * @return the number of moves placed at the start of the buffer.
+     */
+    public int generateQuiets(int[] moves) {
+        return generateMoves(QUIETS, moves);
+    }
+
+    /**
+     * Generates the quiet moves that give check, directly or by uncovering a slider, into a buffer supplied by the caller.
+     *
+     * These are the quiet moves worth trying in a quiescence search.
+     *
+     * @param moves the buffer to fill, at least {@link #MAX_MOVES} long.
+     * @return the number of moves placed at the start of the buffer.
+     */
+    public int generateQuietChecks(int[] moves) {
+        final int count = generateMoves(QUIETS, moves);
         int i = 0;
 
-        for(int p:pieces) {
-            if(p == Board.MAX_SQUARE) {
-                break;  // in sorted order, so we can break early
+        for(int m=0; m < count; ++m) {
+            if(givesCheck(moves[m])) {
+                moves[i++] = moves[m];
             }
+        }
+
+        return i;
+    }
 
-            final Piece piece = getPiece(p);
-            final int[] moves = piece.generateAllMoves(this, p);
+    /**
+     * Generates the legal moves for the stages asked for.
+     * @param stages {@link #CAPTURES}, {@link #QUIETS} or both.
+     * @param moves the buffer to fill.
+     * @return the number of moves placed at the start of the buffer.
+     */
+    private int generateMoves(int stages, int[] moves) {
+        final int us = Bitboards.colorIndex(activeColor);
+        final int kingSquare = activeColor.equals(Color.WHITE) ? whiteKing : blackKing;
+        final int kingIndex = Bitboards.toIndex(kingSquare);
+        final boolean quiets = (stages & QUIETS) != 0;
+
+        // the squares the pieces other than pawns can move to in these stages
+        final long stageTargets = ((stages & CAPTURES) != 0 ? colorBitboards[us ^ 1] : 0L) | (quiets ? ~occupied : 0L);
+
+        // in double check only the king can move
+        if((checkers & (checkers - 1)) != 0) {
+            return generateKingMoves(kingSquare, us, stageTargets, false, moves, 0);
+        }
 
-            for(int m:moves) {
-                if(m == Board.MAX_SQUARE) {
-                    break;  // always in sorted order, so we're done here
-                }
+        // when in check the other pieces must capture the checker or block it
+        final long targets = checkers == 0 ? ~0L : checkers | Bitboards.between(kingIndex, Long.numberOfTrailingZeros(checkers));
+        final long pinned = sliderBlockers(kingIndex, us ^ 1, colorBitboards[us ^ 1]);
+        final int pawn = Pieces.make(us, Bitboards.PAWN);
+        int count = 0;
 
-                // check to see if we have a pawn promoting
-                if(piece instanceof Pawn && ( (m & 0xf0) == 0x70 || (m & 0xf0) == 0x00) ) {
-                    final int move = Board.createMoveValue(p, m, 'q');
+        // pawns push, capture and promote differently, so their moves are sorted into stages after they're generated
+        for(int n=0; n < pieceCounts[pawn]; ++n) {
+            final int p = pieceLists[pawn][n];
 
-                    // if we don't have a valid move, then none of them will be valid
-                    if(!isValidMove(activeColor, move)) {
-                        break;
-                    }
+            count = generateLegalPawnMoves(us, p, stages, allowedTargets(p, pinned, targets, kingIndex), kingIndex, moves, count);
+        }
 
-                    // otherwise, they'll all be valid
-                    allMoves[i++] = move;
-                    allMoves[i++] = Board.createMoveValue(p, m, 'b');
-                    allMoves[i++] = Board.createMoveValue(p, m, 'n');
-                    allMoves[i++] = Board.createMoveValue(p, m, 'r');
-                } else {
-                    final int move = Board.createMoveValue(p, m, '-');
+        // the rest only generate moves to the squares that are legal in these stages
+        for(int type=Bitboards.KNIGHT; type < Bitboards.KING; ++type) {
+            final int piece = Pieces.make(us, type);
 
-                    if(isValidMove(activeColor, move)) {
-                        allMoves[i++] = move;
-                    }
-                }
+            for(int n=0; n < pieceCounts[piece]; ++n) {
+                final int p = pieceLists[piece][n];
+
+                count = generatePieceMoves(piece, p, allowedTargets(p, pinned, targets, kingIndex) & stageTargets, false, moves, count);
             }
         }
 
-        Arrays.fill(allMoves, i, allMoves.length, NULL_MOVE);
-        return allMoves;
+        // the king's moves are checked differently, so it goes last
+        return generateKingMoves(kingSquare, us, stageTargets, quiets && checkers == 0, moves, count);
     }
 
     /**
-     * Checks to see if a move is valid by seeing if the King will be in check after the move.
-     * @param kingColor the color of the king that just moved
-     * @param move the move to test
-     * @return true if the move won't leave the king in check, false if it will.
+     * Appends a pawn's legal moves for the stages asked for.
+     * @param allowed the squares the pawn can move to without leaving its king in check.
      */
-    private boolean isValidMove(Color kingColor, int move) {
-        boolean ret = true;
+    private int generateLegalPawnMoves(int us, int square, int stages, long allowed, int kingIndex, int[] moves, int count) {
+        final int end = generatePawnMoves(us, square, moves, count);
 
-        try {
-            final State state = makeMove(move, false);
+        // compact the pawn's moves, keeping only the legal ones for the stages
+        int i = count;
 
-            // we moved into check, so remove this position from the possible ones
-            if(isInCheck(kingColor)) {
-                ret = false;
+        for(int m=count; m < end; ++m) {
+            final int to = getToSquare(moves[m]);
+            final boolean capture = (moves[m] & (FLAG_CAPTURE | FLAG_PROMOTION)) != 0;
+
+            if((stages & (capture ? CAPTURES : QUIETS)) == 0) {
+                continue;
             }
 
-            this.unmakeMove(move, state);
-        } catch (IllegalMoveException e) {
-            LOG.error("Error making move that should be possible: {}", e.getMessage());
-            LOG.error(board.toString());
+            if(isEnPassant(moves[m]) ? isLegalEnPassant(square, to, kingIndex, us) : (Bitboards.squareBit(to) & allowed) != 0) {
+                moves[i++] = moves[m];
+            }
         }
 
-        return ret;
+        return i;
     }
 
-
     /**
-     * Moves the piece from one square to another performing checks.
+     * Checks if the side to move has at least one legal move, without generating them all.
      *
-     * @param move The move encoded as an integer.
-     * @return The piece which was captured, or null if nothing was captured.
-     * @throws IllegalMoveException
+     * The king's moves are tried first as they're the only moves in double check, then each piece
+     * only needs one square left in its attacks once the pins and checks are masked out.
+     *
+     * @return false if the side to move is checkmated or stalemated.
      */
-    public State makeMove(int move) throws IllegalMoveException {
-        return makeMove(move, true);
+    public boolean hasLegalMove() {
+        return countLegalMoves(true) != 0;
     }
 
     /**
-     * Moves the piece from one square to another.
+     * Counts the legal moves for the side to move, without placing them in a buffer.
      *
-     * @param move The move encoded as an integer.
-     * @param checkMove Check to see if the move is legal or not.
-     * @return The piece which was captured, or null if nothing was captured.
-     * @throws IllegalMoveException
+     * The pieces other than pawns just count the bits in their masked attacks, so this is
+     * cheaper than {@link #generateAllMoves(int[])} when only the number is needed.
+     *
+     * @return the number of legal moves, each promotion piece counting as a move.
      */
-    public State makeMove(int move, boolean checkMove) throws IllegalMoveException {
-        final int fromSquare = Board.getFromSquare(move);
-        final int toSquare = Board.getToSquare(move);
-        final Piece fromPiece = board[fromSquare];
+    public int countLegalMoves() {
+        return countLegalMoves(false);
+    }
 
-        if (fromPiece == null) {
-            LOG.error("There is no piece on square: 0x{}", Integer.toHexString(fromSquare));
-            throw new IllegalMoveException("There is no piece on square: 0x" + Integer.toHexString(fromSquare));
-        }
+    /**
+     * Counts the legal moves, optionally stopping at the first piece that has one.
+     */
+    private int countLegalMoves(boolean stopAtFirst) {
+        final int us = Bitboards.colorIndex(activeColor);
+        final int kingSquare = activeColor.equals(Color.WHITE) ? whiteKing : blackKing;
+        final int kingIndex = Bitboards.toIndex(kingSquare);
+        final long own = colorBitboards[us];
+        int count = 0;
+
+        // the king can't hide behind itself from a slider
+        final long occupiedWithoutKing = occupied ^ (1L << kingIndex);
+
+        for(long kingTargets = Bitboards.KING_ATTACKS[kingIndex] & ~own; kingTargets != 0; kingTargets &= kingTargets - 1) {
+            if(attackers(Long.numberOfTrailingZeros(kingTargets), us ^ 1, occupiedWithoutKing) == 0) {
+                if(stopAtFirst) {
+                    return 1;
+                }
 
-        // we want to return the state of the board before the move was made
-        final State boardState = new State(this);
+                ++count;
+            }
+        }
 
-        // check to see if we're castling
-        if (fromSquare == whiteKing && toSquare == 0x06 && canKingCastle(Color.WHITE)) {
-            makeKingCastle(Color.WHITE);
-            moves++;
-            computeHashCode();
-            return boardState;
-        } else if (fromSquare == blackKing && toSquare == 0x76 && canKingCastle(Color.BLACK)) {
-            makeKingCastle(Color.BLACK);
-            moves++;
-            computeHashCode();
-            return boardState;
-        } else if (fromSquare == whiteKing && toSquare == 0x02 && canQueenCastle(Color.WHITE)) {
-            makeQueenCastle(Color.WHITE);
-            moves++;
-            computeHashCode();
-            return boardState;
-        } else if (fromSquare == blackKing && toSquare == 0x72 && canQueenCastle(Color.BLACK)) {
-            makeQueenCastle(Color.BLACK);
-            moves++;
-            computeHashCode();
-            return boardState;
+        // in double check only the king can move
+        if((checkers & (checkers - 1)) != 0) {
+            return count;
         }
 
-        // check to see if the move is legal or not (this covers en passe, but not castling)
-        if (checkMove && Arrays.binarySearch(fromPiece.generateAllMoves(this, fromSquare), toSquare) < 0) {
-            LOG.error("Illegal move 0x{} - > 0x{} for {}", new String[] { Integer.toHexString(fromSquare), Integer.toHexString(toSquare), fromPiece.toString() });
-            LOG.error("CURRENT BOARD: {}{}", LINE_BREAK, this.toString());
-            throw new IllegalMoveException("That move is not legal for " + fromPiece.toString());
+        // castling needs the king's first step to be safe, so it only adds to the count
+        if(checkers == 0 && !stopAtFirst) {
+            if(canKingCastle(activeColor)) ++count;
+            if(canQueenCastle(activeColor)) ++count;
         }
 
-        final Piece toPiece = board[toSquare];
+        final long targets = (checkers == 0 ? ~0L : checkers | Bitboards.between(kingIndex, Long.numberOfTrailingZeros(checkers))) & ~own;
+        final long pinned = sliderBlockers(kingIndex, us ^ 1, colorBitboards[us ^ 1]);
 
-        // capture the piece
-        if (toPiece != null) {
-            // set the captured piece in the board's state
-            boardState.setCapturedPiece(toPiece);
-
-            // remove castling possibilities if it's a rook being captured
-            if (toSquare == 0x00 && toPiece instanceof Rook) {
-                this.whiteQueenCastle = false;
-            } else if (toSquare == 0x70 && toPiece instanceof Rook) {
-                this.blackQueenCastle = false;
-            } else if (toSquare == 0x07 && toPiece instanceof Rook) {
-                this.whiteKingCastle = false;
-            } else if (toSquare == 0x77 && toPiece instanceof Rook) {
-                this.blackKingCastle = false;
-            }
+        for(int type=Bitboards.KNIGHT; type < Bitboards.KING; ++type) {
+            final int piece = Pieces.make(us, type);
 
-            // remove the piece from the color's list
-            if (toPiece.getColor().equals(Color.BLACK)) {
-                ArraySet.removeNumber(blackPieces, toSquare, Board.MAX_SQUARE);
-            } else {
-                ArraySet.removeNumber(whitePieces, toSquare, Board.MAX_SQUARE);
-            }
+            for(int n=0; n < pieceCounts[piece]; ++n) {
+                final int p = pieceLists[piece][n];
 
-            board[toSquare] = null; // remove the piece from the board
-        } else if (toSquare == enPassant && fromPiece instanceof Pawn) {
-            if (fromPiece.getColor().equals(Color.BLACK)) {
-                boardState.setCapturedPiece(board[toSquare + 0x10]);
-                ArraySet.removeNumber(whitePieces, toSquare + 0x10, Board.MAX_SQUARE);
-                board[toSquare + 0x10] = null;
-            } else {
-                boardState.setCapturedPiece(board[toSquare - 0x10]);
-                ArraySet.removeNumber(blackPieces, toSquare - 0x10, Board.MAX_SQUARE);
-                board[toSquare - 0x10] = null;
-            }
+                count += Long.bitCount(pieceAttacks(type, Bitboards.toIndex(p), occupied) & allowedTargets(p, pinned, targets, kingIndex));
 
-            enPassant = Board.MAX_SQUARE;
+                if(stopAtFirst && count != 0) {
+                    return count;
+                }
+            }
         }
 
-        final int promoteValue = Board.getPromoteValue(move);
-
-        // make the move or the promotion
-        if (promoteValue != 0) {
-            board[toSquare] = AbstractPiece.promoteValueToPiece(promoteValue, activeColor);
-        } else {
-            board[toSquare] = fromPiece;
-        }
+        // pawns have too many special cases to count from a bitboard, so their moves go into the scratch buffer
+        final int pawn = Pieces.make(us, Bitboards.PAWN);
 
-        // remove the piece from the square where it started
-        board[fromSquare] = null;
+        for(int n=0; n < pieceCounts[pawn]; ++n) {
+            final int p = pieceLists[pawn][n];
 
-        // we'll check below to see if this value should be set
-        enPassant = Board.MAX_SQUARE;
+            count += generateLegalPawnMoves(us, p, CAPTURES | QUIETS, allowedTargets(p, pinned, targets, kingIndex), kingIndex, checkMoves, 0);
 
-        // update the piece's location
-        if (fromPiece.getColor().equals(Color.WHITE)) {
-            whitePieces[Arrays.binarySearch(whitePieces, fromSquare)] = toSquare;
-            Arrays.sort(whitePieces);
-
-            if (fromPiece instanceof King) {
-                whiteKing = toSquare;
-                whiteKingCastle = whiteQueenCastle = false;
-            } else if (fromSquare == 0x00 && fromPiece instanceof Rook) {
-                whiteQueenCastle = false;
-            } else if (fromSquare == 0x07 && fromPiece instanceof Rook) {
-                whiteKingCastle = false;
-            } else if (fromPiece instanceof Pawn && (fromSquare & 0xF0) == 0x10 && (toSquare & 0xF0) == 0x30) {
-                enPassant = fromSquare + 0x10;
-            }
-        } else {
-            blackPieces[Arrays.binarySearch(blackPieces, fromSquare)] = toSquare;
-            Arrays.sort(blackPieces);
-
-            if (fromPiece instanceof King) {
-                blackKing = toSquare;
-                blackKingCastle = blackQueenCastle = false;
-            } else if (fromSquare == 0x70 && fromPiece instanceof Rook) {
-                blackQueenCastle = false;
-            } else if (fromSquare == 0x77 && fromPiece instanceof Rook) {
-                blackKingCastle = false;
-            } else if (fromPiece instanceof Pawn && (fromSquare & 0xF0) == 0x60 && (toSquare & 0xF0) == 0x40) {
-                enPassant = fromSquare - 0x10;
+            if(stopAtFirst && count != 0) {
+                return count;
             }
         }
 
-        fromPiece.pieceMoved(); // mark the piece has having moved
+        return count;
+    }
 
-        // Switch the active color if we make a move on the board.
-        activeColor = activeColor.inverse();
+    /**
+     * Returns the squares attacked by a knight or slider.
+     */
+    private static long pieceAttacks(int type, int index, long occupied) {
+        switch(type) {
+        case Bitboards.KNIGHT:
+            return Bitboards.KNIGHT_ATTACKS[index];
 
-        moves++;
-        computeHashCode(); // re-compute the hash code
+        case Bitboards.BISHOP:
+            return Magics.bishopAttacks(index, occupied);
 
-        return boardState;
-    }
+        case Bitboards.ROOK:
+            return Magics.rookAttacks(index, occupied);
 
-    public void unmakeMove(int move, State boardState) throws IllegalMoveException {
-        final int fromSquare = Board.getFromSquare(move);
-        final int toSquare = Board.getToSquare(move);
-        final Piece toPiece = board[toSquare];
-
-        if (toPiece == null) {
-            String from = Integer.toHexString(fromSquare);
-            String to = Integer.toHexString(toSquare);
-
-            LOG.error("Cannot unmake move {} -> {}, no piece on to square", from, to);
-            throw new IllegalMoveException("There is no piece on square: 0x" + Integer.toHexString(toSquare));
-        }
-
-        // check to see if we're castling
-        if (fromSquare == 0x04 && toSquare == 0x06 && whiteKing == 0x06) {
-            board[0x04] = board[0x06]; // move the king back
-            board[0x07] = board[0x05]; // move the rook back
-            ArraySet.removeNumber(whitePieces, 0x06, Board.MAX_SQUARE);
-            ArraySet.removeNumber(whitePieces, 0x05, Board.MAX_SQUARE);
-            ArraySet.addNumber(whitePieces, 0x04);
-            ArraySet.addNumber(whitePieces, 0x07);
-            whiteKing = 0x04;
-            board[0x06] = board[0x05] = null; // null these squares
-            setState(boardState);
-            activeColor = activeColor == Color.WHITE ? Color.BLACK : Color.WHITE;
-            moves--;
-            computeHashCode();
-            return;
-        } else if (fromSquare == 0x74 && toSquare == 0x76 && blackKing == 0x76) {
-            board[0x74] = board[0x76]; // move the king back
-            board[0x77] = board[0x75]; // move the rook back
-            ArraySet.removeNumber(blackPieces, 0x76, Board.MAX_SQUARE);
-            ArraySet.removeNumber(blackPieces, 0x75, Board.MAX_SQUARE);
-            ArraySet.addNumber(blackPieces, 0x74);
-            ArraySet.addNumber(blackPieces, 0x77);
-            blackKing = 0x74;
-            board[0x76] = board[0x75] = null; // null these squares
-            setState(boardState);
-            activeColor = activeColor == Color.WHITE ? Color.BLACK : Color.WHITE;
-            moves--;
-            computeHashCode();
-            return;
-        } else if (fromSquare == 0x04 && toSquare == 0x02 && whiteKing == 0x02) {
-            board[0x04] = board[0x02]; // move the king back
-            board[0x00] = board[0x03]; // move the rook back
-            ArraySet.removeNumber(whitePieces, 0x03, Board.MAX_SQUARE);
-            ArraySet.removeNumber(whitePieces, 0x02, Board.MAX_SQUARE);
-            ArraySet.addNumber(whitePieces, 0x04);
-            ArraySet.addNumber(whitePieces, 0x00);
-            whiteKing = 0x04;
-            board[0x02] = board[0x03] = null; // null these squares
-            setState(boardState);
-            activeColor = activeColor == Color.WHITE ? Color.BLACK : Color.WHITE;
-            moves--;
-            computeHashCode();
-            return;
-        } else if (fromSquare == 0x74 && toSquare == 0x72 && blackKing == 0x72) {
-            board[0x74] = board[0x72]; // move the king back
-            board[0x70] = board[0x73]; // move the rook back
-            ArraySet.removeNumber(blackPieces, 0x73, Board.MAX_SQUARE);
-            ArraySet.removeNumber(blackPieces, 0x72, Board.MAX_SQUARE);
-            ArraySet.addNumber(blackPieces, 0x74);
-            ArraySet.addNumber(blackPieces, 0x70);
-            blackKing = 0x74;
-            board[0x72] = board[0x73] = null; // null these squares
-            setState(boardState);
-            activeColor = activeColor == Color.WHITE ? Color.BLACK : Color.WHITE;
-            moves--;
-            computeHashCode();
-            return;
+        default:
+            return Magics.queenAttacks(index, occupied);
         }
+    }
 
-        final int promoteValue = Board.getPromoteValue(move);
+    /**
+     * Restricts a pinned piece to the line through its king.
+     */
+    private static long allowedTargets(int square, long pinned, long targets, int kingIndex) {
+        final int index = Bitboards.toIndex(square);
 
-        // check to see if we have a promotion, and swap the piece
-        if (promoteValue != 0) {
-            board[fromSquare] = new Pawn(toPiece.getColor());
-        } else {
-            // unmake the move
-            board[fromSquare] = board[toSquare];
-        }
+        return (pinned & (1L << index)) == 0 ? targets : targets & Bitboards.line(kingIndex, index);
+    }
+
+    /**
+     * Appends the moves for a piece to a buffer, without checking if they leave the king in check.
+     *
+     * The pieces are driven by their code: leapers and pawns loop over the per-square target tables
+     * in {@link Pieces}, and sliders look up their attacks in {@link Magics}.
+     *
+     * @param piece the code of the piece.
+     * @param square the square the piece is on.
+     * @param moves the buffer to append the moves to.
+     * @param count the number of moves already in the buffer.
+     * @return the number of moves in the buffer after appending the piece's moves.
+     */
+    public int generatePieceMoves(int piece, int square, int[] moves, int count) {
+        return generatePieceMoves(piece, square, ~0L, true, moves, count);
+    }
 
-        if (toPiece.getColor().equals(Color.WHITE)) {
-            whitePieces[Arrays.binarySearch(whitePieces, toSquare)] = fromSquare;
-            Arrays.sort(whitePieces);
+    /**
+     * Appends the moves for a piece that land on one of the target squares.
+     * @param targets the squares the piece may move to; pawns ignore this.
+     * @param castles true to include the castling moves for a king.
+     */
+    private int generatePieceMoves(int piece, int square, long targets, boolean castles, int[] moves, int count) {
+        final int color = Pieces.colorOf(piece);
+        final long moveTargets = targets & ~colorBitboards[color];
 
-            // if it was a king, reset it's position marker
-            if (toPiece instanceof King) {
-                whiteKing = fromSquare;
-            }
+        switch(Pieces.typeOf(piece)) {
+        case Bitboards.PAWN:
+            return generatePawnMoves(color, square, moves, count);
 
-            final Piece capturedPiece = boardState.getCapturedPiece();
+        case Bitboards.KNIGHT:
+            return generateLeaperMoves(Pieces.KNIGHT_TARGETS[square], square, moveTargets, moves, count);
 
-            if (boardState.getEnPassant() == toSquare && toPiece instanceof Pawn) {
-                board[toSquare - 0x10] = capturedPiece;
-                ArraySet.addNumber(blackPieces, toSquare - 0x10);
-                board[toSquare] = null;
-            } else {
-                board[toSquare] = capturedPiece;
+        case Bitboards.BISHOP:
+            return addMoves(Magics.bishopAttacks(Bitboards.toIndex(square), occupied) & moveTargets, square, moves, count);
 
-                // if we captured a piece, add it back to the board
-                if (capturedPiece != null) {
-                    ArraySet.addNumber(blackPieces, toSquare);
-                }
-            }
-        } else {
-            blackPieces[Arrays.binarySearch(blackPieces, toSquare)] = fromSquare;
-            Arrays.sort(blackPieces);
+        case Bitboards.ROOK:
+            return addMoves(Magics.rookAttacks(Bitboards.toIndex(square), occupied) & moveTargets, square, moves, count);
 
-            // if it was a king, reset it's position marker
-            if (toPiece instanceof King) {
-                blackKing = fromSquare;
+        case Bitboards.QUEEN:
+            return addMoves(Magics.queenAttacks(Bitboards.toIndex(square), occupied) & moveTargets, square, moves, count);
+
+        case Bitboards.KING:
+            count = generateLeaperMoves(Pieces.KING_TARGETS[square], square, moveTargets, moves, count);
+
+            if(!castles) {
+                return count;
             }
 
-            final Piece capturedPiece = boardState.getCapturedPiece();
+            final Color kingColor = Pieces.getColor(piece);
 
-            if (boardState.getEnPassant() == toSquare && toPiece instanceof Pawn) {
-                board[toSquare + 0x10] = capturedPiece;
-                ArraySet.addNumber(whitePieces, toSquare + 0x10);
-                board[toSquare] = null;
-            } else {
-                board[toSquare] = capturedPiece;
+            if(canKingCastle(kingColor)) {
+                moves[count++] = packMove(square, color == Bitboards.WHITE ? 0x06 : 0x76, FLAG_KING_CASTLE);
+            }
 
-                // if we captured a piece, add it back to the board
-                if (capturedPiece != null) {
-                    ArraySet.addNumber(whitePieces, toSquare);
-                }
+            if(canQueenCastle(kingColor)) {
+                moves[count++] = packMove(square, color == Bitboards.WHITE ? 0x02 : 0x72, FLAG_QUEEN_CASTLE);
             }
+
+            return count;
+
+        default:
+            return count;
         }
+    }
 
-        // Switch the active color if we make a move on the board.
-        activeColor = activeColor == Color.WHITE ? Color.BLACK : Color.WHITE;
+    private int generateLeaperMoves(int[] squares, int square, long targets, int[] moves, int count) {
+        for(int to:squares) {
+            if((Bitboards.squareBit(to) & targets) != 0) {
+                moves[count++] = packMove(square, to, board[to] == Pieces.EMPTY ? 0 : FLAG_CAPTURE);
+            }
+        }
 
-        // reset the board's state
-        setState(boardState);
-        
-        moves--;
-        computeHashCode();
+        return count;
     }
 
-    public void makeKingCastle(Color color) throws IllegalMoveException {
-        final int fromSquare = color.equals(Color.WHITE) ? 0x04 : 0x74;
-        final int toSquare = color.equals(Color.WHITE) ? 0x06 : 0x76;
+    private int generatePawnMoves(int color, int square, int[] moves, int count) {
+        final int push = Pieces.PAWN_PUSHES[color][square];
 
-        // move the king
-        board[toSquare] = board[fromSquare];
-        board[fromSquare] = null;
+        // straight forward moves
+        if(push >= 0 && board[push] == Pieces.EMPTY) {
+            count = addPawnMove(square, push, 0, moves, count);
 
-        // move the rook
-        board[toSquare - 1] = board[fromSquare + 3];
-        board[fromSquare + 3] = null;
+            final int doublePush = Pieces.PAWN_DOUBLE_PUSHES[color][square];
 
-        // update the king, castling and pieces
-        if (color.equals(Color.WHITE)) {
-            whiteKing = toSquare;
-            whiteKingCastle = whiteQueenCastle = false;
-            ArraySet.removeNumber(whitePieces, 0x04, Board.MAX_SQUARE);
-            ArraySet.removeNumber(whitePieces, 0x07, Board.MAX_SQUARE);
-            ArraySet.addNumber(whitePieces, 0x06);
-            ArraySet.addNumber(whitePieces, 0x05);
+            if(doublePush >= 0 && board[doublePush] == Pieces.EMPTY) {
+                moves[count++] = packMove(square, doublePush, FLAG_DOUBLE_PUSH);
+            }
+        }
+
+        // captures to the left and right, including en passant
+        for(int capture:Pieces.PAWN_CAPTURES[color][square]) {
+            final int p = board[capture];
+
+            if(p != Pieces.EMPTY && Pieces.colorOf(p) != color) {
+                count = addPawnMove(square, capture, FLAG_CAPTURE, moves, count);
+            } else if(capture == enPassant) {
+                moves[count++] = packMove(square, capture, FLAG_EN_PASSANT);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Appends a pawn move, or one move for each piece the pawn can promote to on the last rank.
+     */
+    private static int addPawnMove(int fromSquare, int toSquare, int flags, int[] moves, int count) {
+        if((toSquare & 0xf0) == 0x70 || (toSquare & 0xf0) == 0x00) {
+            // queen, bishop, knight and rook
+            for(int promoteValue=1; promoteValue <= 4; ++promoteValue) {
+                moves[count++] = packMove(fromSquare, toSquare, flags | promotionFlags(promoteValue));
+            }
         } else {
-            blackKing = toSquare;
-            blackKingCastle = blackQueenCastle = false;
-            ArraySet.removeNumber(blackPieces, 0x74, Board.MAX_SQUARE);
-            ArraySet.removeNumber(blackPieces, 0x77, Board.MAX_SQUARE);
-            ArraySet.addNumber(blackPieces, 0x76);
-            ArraySet.addNumber(blackPieces, 0x75);
+            moves[count++] = packMove(fromSquare, toSquare, flags);
         }
 
-        this.enPassant = Board.MAX_SQUARE;
-        activeColor = activeColor == Color.WHITE ? Color.BLACK : Color.WHITE;
+        return count;
     }
 
-    public void makeQueenCastle(Color color) throws IllegalMoveException {
-        final int fromSquare = color.equals(Color.WHITE) ? 0x04 : 0x74;
-        final int toSquare = color.equals(Color.WHITE) ? 0x02 : 0x72;
+    /**
+     * Appends a move to each of the squares in a bitboard, flagging the captures.
+     */
+    private int addMoves(long targets, int square, int[] moves, int count) {
+        final int from = Bitboards.toIndex(square);
 
-        // move the king
-        board[toSquare] = board[fromSquare];
-        board[fromSquare] = null;
+        for( ; targets != 0; targets &= targets - 1) {
+            final int to = Long.numberOfTrailingZeros(targets);
 
-        // move the rook
-        board[toSquare + 1] = board[fromSquare - 4];
-        board[fromSquare - 4] = null;
+            moves[count++] = from | (to << 6) | (((occupied >>> to) & 1) == 0 ? 0 : FLAG_CAPTURE);
+        }
 
-        // update the king, castling and pieces
-        if (color.equals(Color.WHITE)) {
-            whiteKing = toSquare;
-            whiteKingCastle = whiteQueenCastle = false;
-            ArraySet.removeNumber(whitePieces, 0x04, Board.MAX_SQUARE);
-            ArraySet.removeNumber(whitePieces, 0x00, Board.MAX_SQUARE);
-            ArraySet.addNumber(whitePieces, 0x02);
-            ArraySet.addNumber(whitePieces, 0x03);
-        } else {
-            blackKing = toSquare;
-            blackKingCastle = blackQueenCastle = false;
-            ArraySet.removeNumber(blackPieces, 0x74, Board.MAX_SQUARE);
-            ArraySet.removeNumber(blackPieces, 0x70, Board.MAX_SQUARE);
-            ArraySet.addNumber(blackPieces, 0x72);
-            ArraySet.addNumber(blackPieces, 0x73);
+        return count;
+    }
+
+    /**
+     * Generates the king's moves into the buffer, keeping only those to squares that aren't attacked.
+     */
+    private int generateKingMoves(int kingSquare, int us, long targets, boolean castles, int[] moves, int count) {
+        final int end = generatePieceMoves(board[kingSquare], kingSquare, targets, castles, moves, count);
+
+        // the king can't hide behind itself from a slider
+        final long occupiedWithoutKing = occupied ^ Bitboards.squareBit(kingSquare);
+        int i = count;
+
+        for(int m=count; m < end; ++m) {
+            if(attackers(Bitboards.toIndex(getToSquare(moves[m])), us ^ 1, occupiedWithoutKing) == 0) {
+                moves[i++] = moves[m];
+            }
         }
 
-        this.enPassant = Board.MAX_SQUARE;
-        activeColor = activeColor == Color.WHITE ? Color.BLACK : Color.WHITE;
+        return i;
     }
 
     /**
-     * For debug use only.
+     * Checks an en passant capture by seeing if the king is attacked once both pawns are off their squares.
+     */
+    private boolean isLegalEnPassant(int fromSquare, int toSquare, int kingIndex, int us) {
+        final long captured = Bitboards.squareBit(toSquare + (us == Bitboards.WHITE ? -0x10 : 0x10));
+        final long occupiedAfter = (occupied ^ Bitboards.squareBit(fromSquare) ^ captured) | Bitboards.squareBit(toSquare);
+
+        return (attackers(kingIndex, us ^ 1, occupiedAfter) & ~captured) == 0;
+    }
+
+    /**
+     * Finds the pieces that are the only thing between a king and a slider that would otherwise attack it.
      *
-     * Checks the board by going through all the white and black pieces
-     * and makes sure they're in order, not null, and the proper color.
+     * With the slider's color as the stoppers these are the pieces pinned to the king, and with the
+     * king's color they are the slider's own pieces that would give a discovered check if they moved.
      *
-     * Finally the whole board is checked to makes sure all pieces are accounted for.
-     * @throws IllegalMoveException
+     * @param kingIndex the bit index of the king.
+     * @param sliders the color index of the sliding pieces.
+     * @param stoppers the pieces the rays from the king stop at.
+     * @return the blocking pieces.
      */
-    public void checkBoard() throws IllegalMoveException {
-        int last = -1;
+    private long sliderBlockers(int kingIndex, int sliders, long stoppers) {
+        final long[] pieces = bitboards[sliders];
+        final long queens = pieces[Bitboards.QUEEN];
 
-        // check the white pieces
-        for (int p : whitePieces) {
-            if (last > p) {
-                throw new IllegalMoveException("WHITE PIECES OUT OF ORDER");
-            }
+        // the sliders that would attack the king if none of the other pieces were in the way
+        long snipers = (Bitboards.rookAttacks(kingIndex, stoppers) & (pieces[Bitboards.ROOK] | queens)) |
+                       (Bitboards.bishopAttacks(kingIndex, stoppers) & (pieces[Bitboards.BISHOP] | queens));
+        long ret = 0;
 
-            last = p;
+        for( ; snipers != 0; snipers &= snipers - 1) {
+            final long blockers = Bitboards.between(kingIndex, Long.numberOfTrailingZeros(snipers)) & occupied;
 
-            if (p == Board.MAX_SQUARE) {
-                continue;
+            // only a single blocker between them counts
+            if(blockers != 0 && (blockers & (blockers - 1)) == 0) {
+                ret |= blockers;
             }
+        }
 
-            if (board[p] == null) {
-                System.out.println("BOARD PIECE IS NULL: 0x" + Integer.toHexString(p));
-                System.out.println(this.toString());
-                throw new IllegalMoveException("BOARD PIECE IS NULL: 0x" + Integer.toHexString(p));
-            }
+        return ret;
+    }
 
-            if (!board[p].getColor().equals(Color.WHITE)) {
-                System.out.println("BOARD PIECE IS NOT WHITE: 0x" + Integer.toHexString(p));
-                System.out.println(this.toString());
-                throw new IllegalMoveException("BOARD PIECE IS NOT WHITE: 0x" + Integer.toHexString(p));
-            }
+    /**
+     * Checks if a move gives check, without making it.
+     *
+     * The squares each type of piece would check the other king from, and the pieces that would
+     * uncover a check, are worked out once per position; most moves are then a couple of bit tests.
+     * Only promotions, en passant and castling look at the board after the move.
+     *
+     * @param move a legal move for the side to move.
+     * @return true if the other side is in check after the move.
+     */
+    public boolean givesCheck(int move) {
+        if (!checkInfoValid) {
+            computeCheckInfo();
         }
 
-        last = -1;
-        // check the black pieces
-        for (int p : blackPieces) {
-            if (last > p) {
-                throw new IllegalMoveException("BLACK PIECES OUT OF ORDER: " + last + " " + p);
-            }
+        final int us = Bitboards.colorIndex(activeColor);
+        final int theirKing = Bitboards.toIndex(activeColor.equals(Color.WHITE) ? blackKing : whiteKing);
+        final int fromSquare = getFromSquare(move);
+        final int toSquare = getToSquare(move);
+        final long fromBit = Bitboards.squareBit(fromSquare);
+        final long toBit = Bitboards.squareBit(toSquare);
+        final int type = Pieces.typeOf(board[fromSquare]);
+
+        // a direct check
+        if (type != Bitboards.KING && (checkSquares[type] & toBit) != 0) {
+            return true;
+        }
 
-            last = p;
+        // moving off the line between a slider and the king
+        if ((discoverers & fromBit) != 0 && (Bitboards.line(theirKing, Bitboards.toIndex(fromSquare)) & toBit) == 0) {
+            return true;
+        }
 
-            if (p == Board.MAX_SQUARE) {
-                continue;
-            }
+        final long occupiedAfter = (occupied ^ fromBit) | toBit;
 
-            if (board[p] == null) {
-                System.out.println("BLACK BOARD PIECE IS NULL: 0x" + Integer.toHexString(p));
-                System.out.println(this.toString());
-                throw new IllegalMoveException("BLACK BOARD PIECE IS NULL: 0x" + Integer.toHexString(p));
-            }
+        if (isPromotion(move)) {
+            final int promoted = Pieces.typeOf(Pieces.promoteCode(getPromoteValue(move), us));
 
-            if (!board[p].getColor().equals(Color.BLACK)) {
-                System.out.println("BOARD PIECE IS NOT BLACK: 0x" + Integer.toHexString(p));
-                System.out.println(this.toString());
-                throw new IllegalMoveException("BOARD PIECE IS NOT BLACK: 0x" + Integer.toHexString(p));
-            }
+            return (pieceAttacks(promoted, Bitboards.toIndex(toSquare), occupiedAfter) & (1L << theirKing)) != 0;
         }
 
-        for (int i = 0; i < Board.MAX_SQUARE; ++i) {
-            if (board[i] == null) {
-                continue;
-            }
+        if (isEnPassant(move)) {
+            // the captured pawn can uncover a slider too
+            final long withoutCaptured = occupiedAfter ^ Bitboards.squareBit(toSquare + (us == Bitboards.WHITE ? -0x10 : 0x10));
+            final long[] pieces = bitboards[us];
+            final long queens = pieces[Bitboards.QUEEN];
 
-            if (Arrays.binarySearch(whitePieces, i) < 0 && Arrays.binarySearch(blackPieces, i) < 0) {
-                throw new IllegalMoveException("BOARD PIECE NOT FOUND: 0x" + Integer.toHexString(i));
-            }
+            return ((Magics.rookAttacks(theirKing, withoutCaptured) & (pieces[Bitboards.ROOK] | queens)) |
+                    (Magics.bishopAttacks(theirKing, withoutCaptured) & (pieces[Bitboards.BISHOP] | queens))) != 0;
         }
+
+        if (isCastle(move)) {
+            // see if the rook checks from its new square
+            final int rookTo = Bitboards.toIndex(toSquare > fromSquare ? toSquare - 1 : toSquare + 1);
+            final int rookFrom = Bitboards.toIndex(toSquare > fromSquare ? fromSquare + 3 : fromSquare - 4);
+            final long afterCastle = occupiedAfter ^ (1L << rookFrom) ^ (1L << rookTo);
+
+            return (Magics.rookAttacks(rookTo, afterCastle) & (1L << theirKing)) != 0;
+        }
+
+        return false;
     }
 
     /**
-     * Checks to see if a color is in check or not.
-     * @param color the color to check.
-     * @return True if that color's King is in check, false otherwise.
+     * Works out the check squares and discovered check candidates for the side to move.
      */
-    public boolean isInCheck(Color color) {
-        return isSquareAttacked(color, color.equals(Color.WHITE) ? whiteKing : blackKing);
+    private void computeCheckInfo() {
+        final int us = Bitboards.colorIndex(activeColor);
+        final int theirKing = Bitboards.toIndex(activeColor.equals(Color.WHITE) ? blackKing : whiteKing);
+
+        // a pawn checks from the squares a pawn of the king's color on the king's square would attack
+        checkSquares[Bitboards.PAWN] = Bitboards.PAWN_ATTACKS[us ^ 1][theirKing];
+
+        for (int type = Bitboards.KNIGHT; type < Bitboards.KING; ++type) {
+            checkSquares[type] = pieceAttacks(type, theirKing, occupied);
+        }
+
+        discoverers = sliderBlockers(theirKing, us, colorBitboards[us ^ 1]) & colorBitboards[us];
+        checkInfoValid = true;
     }
 
     /**
-     * Given a color and a square, see if the square is being attacked by the opposite color.
-     *
-     * @param defendingColor the color of the non-attacking player.
-     * @param square the square to check.
-     * @return True if the square is being attacked by the opposite color.
+     * Returns the pieces giving check to the side to move.
+     * @return a bitboard of the checking pieces, empty if not in check.
      */
-    public boolean isSquareAttacked(Color defendingColor, int square) {
+    public long getCheckers() {
+        return checkers;
+    }
 
-        // "look" to the left
-        for(int pos=square-0x01; Board.isValidPosition(pos); pos -= 0x01) {
-            final Piece piece = board[pos];
+    /**
+     * Moves the piece from one square to another performing checks.
+     *
+     * @param move The move encoded as an integer.
+     * @throws IllegalMoveException
+     */
+    public void makeMove(int move) throws IllegalMoveException {
+        makeMove(move, true);
+    }
 
-            // no piece, keep moving
-            if(piece == null) continue;
+    /**
+     * Moves the piece from one square to another.
+     *
+     * The move's flags say what kind of move it is, so a move from the generator is made without
+     * looking anything up. When checking, the flags are worked out from the board first, so moves
+     * built with {@link #createMoveValue(int, int, char)} can be checked and made too.
+     *
+     * The state needed to take the move back is pushed onto the board's undo stack, so nothing is
+     * allocated; call {@link #undoMove()} to take it back.
+     *
+     * @param move The move encoded as an integer.
+     * @param checkMove Check to see if the move is legal or not.
+     * @throws IllegalMoveException
+     */
+    public void makeMove(int move, boolean checkMove) throws IllegalMoveException {
+        final int fromSquare = Board.getFromSquare(move);
+        final int toSquare = Board.getToSquare(move);
+        final int fromPiece = board[fromSquare];
 
-            // our own color, so done looking
-            if(piece.getColor().equals(defendingColor)) break;
+        if (fromPiece == Pieces.EMPTY) {
+            LOG.error("There is no piece on square: 0x{}", Integer.toHexString(fromSquare));
+            throw new IllegalMoveException("There is no piece on square: 0x" + Integer.toHexString(fromSquare));
+        }
 
-            // one away is a king
-            if(pos == square-0x01 && piece instanceof King) return true;
+        if (checkMove) {
+            move = flagMove(move);
 
-            // we found a rook or queen of the other color, we're in check
-            if(piece instanceof Rook || piece instanceof Queen) {
-                return true;
-            } else {
-                break; // non-attacking piece
+            if (!isPseudoLegal(move)) {
+                LOG.error("Illegal move 0x{} - > 0x{} for {}", new String[] { Integer.toHexString(fromSquare), Integer.toHexString(toSquare), getPiece(fromSquare).toString() });
+                LOG.error("CURRENT BOARD: {}{}", LINE_BREAK, this.toString());
+                throw new IllegalMoveException("That move is not legal for " + getPiece(fromSquare).toString());
             }
         }
 
-        // "look" to the right
-        for(int pos=square+0x01; Board.isValidPosition(pos); pos += 0x01) {
-            final Piece piece = board[pos];
-
-            // no piece, keep moving
-            if(piece == null) continue;
+        // save the state of the board before the move is made
+        pushUndo(move);
+        playMove(move, fromPiece, true);
+    }
 
-            // our own color, so done looking
-            if(piece.getColor().equals(defendingColor)) break;
+    /**
+     * Makes a move from the move generator without saving anything to take it back, for copy-make:
+     * the board is copied with {@link #copyFrom(Board)} before the move instead of being undone
+     * after it. The undo stack is cleared, as its moves no longer lead to this position.
+     *
+     * @param move a legal move for this position, with its flags.
+     */
+    public void makeMoveWithoutUndo(int move) {
+        undoCount = 0;
+        checkInfoValid = false;
+        playMove(move, board[Board.getFromSquare(move)], false);
+    }
 
-            // one away is a king
-            if(pos == square+0x01 && piece instanceof King) return true;
+    /**
+     * Moves the pieces and updates the board's state for a move with its flags.
+     * @param saveCaptured true to record a captured piece on the undo entry pushed for the move.
+     */
+    private void playMove(int move, int fromPiece, boolean saveCaptured) {
+        final int fromSquare = Board.getFromSquare(move);
+        final int toSquare = Board.getToSquare(move);
+        final int flags = move & FLAGS;
 
-            // we found a rook or queen of the other color, we're in check
-            if(piece instanceof Rook || piece instanceof Queen) {
-                return true;
-            } else {
-                break; // non-attacking piece
-            }
+        if (flags == FLAG_KING_CASTLE) {
+            makeKingCastle(Pieces.getColor(fromPiece));
+            moves++;
+            return;
+        } else if (flags == FLAG_QUEEN_CASTLE) {
+            makeQueenCastle(Pieces.getColor(fromPiece));
+            moves++;
+            return;
         }
 
-        // "look" up
-        for(int pos=square+0x10; Board.isValidPosition(pos); pos += 0x10) {
-            final Piece piece = board[pos];
+        zobristKey ^= stateKey(); // remove the castling, en passant and side to move
 
-            // no piece, keep moving
-            if(piece == null) continue;
+        // reset the clock on captures and pawn moves
+        if ((move & FLAG_CAPTURE) != 0 || Pieces.typeOf(fromPiece) == Bitboards.PAWN) {
+            halfMoveClock = 0;
+        } else {
+            halfMoveClock++;
+        }
 
-            // our own color, so done looking
-            if(piece.getColor().equals(defendingColor)) break;
+        // capture the piece
+        if (flags == FLAG_EN_PASSANT) {
+            final int capturedSquare = toSquare + (Pieces.colorOf(fromPiece) == Bitboards.WHITE ? -0x10 : 0x10);
+            final int captured = board[capturedSquare];
 
-            // one away is a king
-            if(pos == square+0x10 && piece instanceof King) return true;
+            if (saveCaptured) {
+                undoCaptured[undoCount - 1] = captured;
+            }
 
-            // we found a rook or queen of the other color, we're in check
-            if(piece instanceof Rook || piece instanceof Queen) {
-                return true;
-            } else {
-                break; // non-attacking piece
+            togglePiece(captured, capturedSquare);
+            removePiece(captured, capturedSquare);
+            board[capturedSquare] = Pieces.EMPTY;
+        } else if ((move & FLAG_CAPTURE) != 0) {
+            final int toPiece = board[toSquare];
+
+            // save the captured piece for undoing the move
+            if (saveCaptured) {
+                undoCaptured[undoCount - 1] = toPiece;
             }
+
+            togglePiece(toPiece, toSquare);
+            removePiece(toPiece, toSquare);
         }
 
-        // "look" down
-        for(int pos=square-0x10; Board.isValidPosition(pos); pos -= 0x10) {
-            final Piece piece = board[pos];
+        // make the move or the promotion
+        if ((move & FLAG_PROMOTION) != 0) {
+            board[toSquare] = (byte) Pieces.promoteCode(getPromoteValue(move), Pieces.colorOf(fromPiece));
+            removePiece(fromPiece, fromSquare);
+            addPiece(board[toSquare], toSquare);
+        } else {
+            board[toSquare] = (byte) fromPiece;
+            movePiece(fromPiece, fromSquare, toSquare);
+        }
 
-            // no piece, keep moving
-            if(piece == null) continue;
+        // remove the piece from the square where it started
+        board[fromSquare] = Pieces.EMPTY;
 
-            // our own color, so done looking
-            if(piece.getColor().equals(defendingColor)) break;
+        togglePiece(fromPiece, fromSquare);
+        togglePiece(board[toSquare], toSquare);
 
-            // one away is a king
-            if(pos == square-0x10 && piece instanceof King) return true;
+        // the square a double push skipped over can be captured en passant
+        enPassant = flags == FLAG_DOUBLE_PUSH ? (fromSquare + toSquare) >> 1 : Board.MAX_SQUARE;
 
-            // we found a rook or queen of the other color, we're in check
-            if(piece instanceof Rook || piece instanceof Queen) {
-                return true;
-            } else {
-                break; // non-attacking piece
-            }
+        // moving the king or a rook, or capturing a rook, loses those castling rights
+        castling &= CASTLING_KEPT[fromSquare] & CASTLING_KEPT[toSquare];
+
+        if (fromPiece == Pieces.WHITE_KING) {
+            whiteKing = toSquare;
+        } else if (fromPiece == Pieces.BLACK_KING) {
+            blackKing = toSquare;
         }
 
-        // "look" upper-right
-        for(int pos=square+0x11; Board.isValidPosition(pos); pos += 0x11) {
-            final Piece piece = board[pos];
+        // Switch the active color if we make a move on the board.
+        activeColor = activeColor.inverse();
 
-            // no piece, keep moving
-            if(piece == null) continue;
+        zobristKey ^= stateKey(); // add back the new castling, en passant and side to move
+        checkers = computeCheckers();
 
-            // our own color, so done looking
-            if(piece.getColor().equals(defendingColor)) break;
+        moves++;
+    }
 
-            // one away is a king
-            if(pos == square+0x11 && piece instanceof King) return true;
+    /**
+     * Checks if a move could have come from the move generator for this position, ignoring whether it
+     * leaves the king in check. Moves from the transposition table or the killer slots can be from
+     * another position, so they have to pass this before they are made.
+     *
+     * Nothing is generated: the flags are compared to what the board says they should be, pawns are
+     * checked against their target tables, and the other pieces with {@link #attacks(int, int)}.
+     *
+     * @param move the move, with its flags.
+     * @return true if the side to move has a piece that makes this move.
+     */
+    public boolean isPseudoLegal(int move) {
+        final int fromSquare = getFromSquare(move);
+        final int toSquare = getToSquare(move);
+        final int piece = board[fromSquare];
+        final int us = Bitboards.colorIndex(activeColor);
 
-            // we found a rook or queen of the other color, we're in check
-            if(piece instanceof Bishop || piece instanceof Queen) {
-                return true;
-            } else {
-                break; // non-attacking piece
-            }
+        if (move == NULL_MOVE || piece == Pieces.EMPTY || Pieces.colorOf(piece) != us || flagMove(move) != move) {
+            return false;
         }
 
-        // "look" lower-left
-        for(int pos=square-0x11; Board.isValidPosition(pos); pos -= 0x11) {
-            final Piece piece = board[pos];
+        final int target = board[toSquare];
 
-            // no piece, keep moving
-            if(piece == null) continue;
+        if (target != Pieces.EMPTY && Pieces.colorOf(target) == us) {
+            return false;
+        }
 
-            // our own color, so done looking
-            if(piece.getColor().equals(defendingColor)) break;
+        switch (move & FLAGS) {
+        case FLAG_KING_CASTLE:
+            return canKingCastle(activeColor);
 
-            // one away is a king
-            if(pos == square-0x11 && piece instanceof King) return true;
+        case FLAG_QUEEN_CASTLE:
+            return canQueenCastle(activeColor);
+        }
 
-            // we found a rook or queen of the other color, we're in check
-            if(piece instanceof Bishop || piece instanceof Queen) {
-                return true;
-            } else {
-                break; // non-attacking piece
-            }
+        if (Pieces.typeOf(piece) != Bitboards.PAWN) {
+            return !isPromotion(move) && attacks(fromSquare, toSquare);
         }
 
-        // "look" upper-left
-        for(int pos=square+0x0f; Board.isValidPosition(pos); pos += 0x0f) {
-            final Piece piece = board[pos];
+        // a pawn has to promote when it reaches the last rank, and can't anywhere else
+        final boolean lastRank = (toSquare & 0xf0) == (us == Bitboards.WHITE ? 0x70 : 0x00);
 
-            // no piece, keep moving
-            if(piece == null) continue;
+        if (lastRank != isPromotion(move)) {
+            return false;
+        }
 
-            // our own color, so done looking
-            if(piece.getColor().equals(defendingColor)) break;
+        if ((move & FLAG_CAPTURE) != 0) {
+            // captures, including en passant, which flagMove only sets on the en passant square
+            for (int capture:Pieces.PAWN_CAPTURES[us][fromSquare]) {
+                if (capture == toSquare) {
+                    return true;
+                }
+            }
 
-            // one away is a king
-            if(pos == square+0x0f && piece instanceof King) return true;
+            return false;
+        }
 
-            // we found a rook or queen of the other color, we're in check
-            if(piece instanceof Bishop || piece instanceof Queen) {
-                return true;
-            } else {
-                break; // non-attacking piece
-            }
+        final int push = Pieces.PAWN_PUSHES[us][fromSquare];
+
+        if (toSquare == push) {
+            return target == Pieces.EMPTY;
         }
 
-        // "look" lower-right
-        for(int pos=square-0x0f; Board.isValidPosition(pos); pos -= 0x0f) {
-            final Piece piece = board[pos];
+        return toSquare == Pieces.PAWN_DOUBLE_PUSHES[us][fromSquare] && board[push] == Pieces.EMPTY && target == Pieces.EMPTY;
+    }
 
-            // no piece, keep moving
-            if(piece == null) continue;
+    /**
+     * Checks if a move is legal in this position: it is pseudo-legal and doesn't leave the king in check.
+     *
+     * The king's safety is tested without making the move, using the checkers and the pieces pinned to
+     * the king the same way the move generator does.
+     *
+     * @param move the move, with its flags.
+     * @return true if the move is one of the moves {@link #generateAllMoves(int[])} would return.
+     */
+    public boolean isLegal(int move) {
+        if (!isPseudoLegal(move)) {
+            return false;
+        }
 
-            // our own color, so done looking
-            if(piece.getColor().equals(defendingColor)) break;
+        final int fromSquare = getFromSquare(move);
+        final int toSquare = getToSquare(move);
+        final int us = Bitboards.colorIndex(activeColor);
+        final int kingSquare = activeColor.equals(Color.WHITE) ? whiteKing : blackKing;
+        final int kingIndex = Bitboards.toIndex(kingSquare);
 
-            // one away is a king
-            if(pos == square-0x0f && piece instanceof King) return true;
+        // castling already checked the squares the king crosses
+        if (isCastle(move)) {
+            return true;
+        }
 
-            // we found a rook or queen of the other color, we're in check
-            if(piece instanceof Bishop || piece instanceof Queen) {
-                return true;
-            } else {
-                break; // non-attacking piece
-            }
+        if (fromSquare == kingSquare) {
+            return attackers(Bitboards.toIndex(toSquare), us ^ 1, occupied ^ Bitboards.squareBit(kingSquare)) == 0;
         }
 
-        // check for knights attacking (adding)
-        for(int knightMove:Knight.KNIGHT_MOVES) {
-            final int pos = square + knightMove;
+        if (isEnPassant(move)) {
+            return isLegalEnPassant(fromSquare, toSquare, kingIndex, us);
+        }
 
-            if(! Board.isValidPosition(pos)) continue;
+        // in double check only the king can move
+        if ((checkers & (checkers - 1)) != 0) {
+            return false;
+        }
 
-            final Piece piece = board[pos];
+        final long targets = checkers == 0 ? ~0L : checkers | Bitboards.between(kingIndex, Long.numberOfTrailingZeros(checkers));
+        final long pinned = sliderBlockers(kingIndex, us ^ 1, colorBitboards[us ^ 1]);
 
-            // no piece, or our own
-            if(piece == null || piece.getColor().equals(defendingColor)) continue;
+        return (allowedTargets(fromSquare, pinned, targets, kingIndex) & Bitboards.squareBit(toSquare)) != 0;
+    }
 
-            if(piece instanceof Knight) return true;
+    /**
+     * Saves the board's state on the undo stack before a move is made.
+     */
+    private void pushUndo(int move) {
+        if (undoCount == undoMoves.length) {
+            growUndo();
         }
 
-        // check for knights attacking (subtracting)
-        for(int knightMove:Knight.KNIGHT_MOVES) {
-            final int pos = square - knightMove;
+        undoMoves[undoCount] = move;
+        undoCaptured[undoCount] = Pieces.EMPTY;
+        undoCastling[undoCount] = getCastlingMask();
+        undoEnPassant[undoCount] = enPassant;
+        undoHalfMoveClock[undoCount] = halfMoveClock;
+        undoZobristKeys[undoCount] = zobristKey;
+        undoPawnKeys[undoCount] = pawnKey;
+        undoCheckers[undoCount] = checkers;
+        undoMaterialScores[undoCount] = materialScore;
+        undoPositionScores[undoCount] = positionScore;
+
+        undoCount++;
+        checkInfoValid = false;
+    }
 
-            if(! Board.isValidPosition(pos)) continue;
+    /**
+     * Allocates the undo stack for the first move, then doubles it for games longer than
+     * {@link #UNDO_SIZE} moves.
+     */
+    private void growUndo() {
+        final int size = Math.max(undoMoves.length * 2, UNDO_SIZE);
+
+        undoMoves = Arrays.copyOf(undoMoves, size);
+        undoCaptured = Arrays.copyOf(undoCaptured, size);
+        undoCastling = Arrays.copyOf(undoCastling, size);
+        undoEnPassant = Arrays.copyOf(undoEnPassant, size);
+        undoHalfMoveClock = Arrays.copyOf(undoHalfMoveClock, size);
+        undoZobristKeys = Arrays.copyOf(undoZobristKeys, size);
+        undoPawnKeys = Arrays.copyOf(undoPawnKeys, size);
+        undoCheckers = Arrays.copyOf(undoCheckers, size);
+        undoMaterialScores = Arrays.copyOf(undoMaterialScores, size);
+        undoPositionScores = Arrays.copyOf(undoPositionScores, size);
+    }
 
-            final Piece piece = board[pos];
+    /**
+     * Takes back the last move made with {@link #makeMove(int, boolean)}.
+     *
+     * The pieces are moved back on the board and bitboards, and everything else is restored from
+     * the undo stack.
+     *
+     * @throws IllegalMoveException if there is no move to undo.
+     */
+    public void undoMove() throws IllegalMoveException {
+        if (undoCount == 0) {
+            LOG.error("Cannot undo a move, no moves have been made");
+            throw new IllegalMoveException("There are no moves to undo");
+        }
 
-            // no piece, or our own
-            if(piece == null || piece.getColor().equals(defendingColor)) continue;
+        final int ply = --undoCount;
+        final int move = undoMoves[ply];
+        final int fromSquare = Board.getFromSquare(move);
+        final int toSquare = Board.getToSquare(move);
+        final int toPiece = board[toSquare];
+        final int color = Pieces.colorOf(toPiece);
+
+        if (isCastle(move)) {
+            // castling, so move the rook back too
+            final int rookFrom = toSquare > fromSquare ? fromSquare + 3 : fromSquare - 4;
+            final int rookTo = toSquare > fromSquare ? toSquare - 1 : toSquare + 1;
+            final int rook = board[rookTo];
+
+            toggleBits(toPiece, toSquare);
+            toggleBits(toPiece, fromSquare);
+            toggleBits(rook, rookTo);
+            toggleBits(rook, rookFrom);
+
+            board[fromSquare] = (byte) toPiece;
+            board[rookFrom] = (byte) rook;
+            board[toSquare] = board[rookTo] = Pieces.EMPTY;
+
+            movePiece(toPiece, toSquare, fromSquare);
+            movePiece(rook, rookTo, rookFrom);
+        } else {
+            // put a promoted piece back to a pawn
+            final int fromPiece = isPromotion(move) ? Pieces.make(color, Bitboards.PAWN) : toPiece;
+            final int captured = undoCaptured[ply];
 
-            if(piece instanceof Knight) return true;
-        }
+            toggleBits(toPiece, toSquare);
+            toggleBits(fromPiece, fromSquare);
 
-        // check for pawns attacking
-        if(defendingColor.equals(Color.BLACK)) {
-            if(Board.isValidPosition(square - 0x11)) {
-                final Piece piece = board[square - 0x11];
+            board[fromSquare] = (byte) fromPiece;
+            board[toSquare] = Pieces.EMPTY;
 
-                if(piece != null &&
-                   ! piece.getColor().equals(defendingColor) &&
-                   piece instanceof Pawn) return true;
+            if (fromPiece != toPiece) {
+                removePiece(toPiece, toSquare);
+                addPiece(fromPiece, fromSquare);
+            } else {
+                movePiece(toPiece, toSquare, fromSquare);
             }
 
-            if(Board.isValidPosition(square - 0x0f)) {
-                final Piece piece = board[square - 0x0f];
+            // if we captured a piece, add it back to the board
+            if (captured != Pieces.EMPTY) {
+                final int capturedSquare = isEnPassant(move) ? toSquare + (color == Bitboards.WHITE ? -0x10 : 0x10) : toSquare;
 
-                if(piece != null &&
-                   ! piece.getColor().equals(defendingColor) &&
-                   piece instanceof Pawn) return true;
+                board[capturedSquare] = (byte) captured;
+                toggleBits(captured, capturedSquare);
+                addPiece(captured, capturedSquare);
             }
-        } else {
-            if(Board.isValidPosition(square + 0x11)) {
-                final Piece piece = board[square + 0x11];
+        }
 
-                if(piece != null &&
-                   ! piece.getColor().equals(defendingColor) &&
-                   piece instanceof Pawn) return true;
+        // if it was a king, reset it's position marker
+        if (Pieces.typeOf(toPiece) == Bitboards.KING) {
+            if (color == Bitboards.WHITE) {
+                whiteKing = fromSquare;
+            } else {
+                blackKing = fromSquare;
             }
+        }
 
-            if(Board.isValidPosition(square + 0x0f)) {
-                final Piece piece = board[square + 0x0f];
+        // restore the rest of the board's state
+        setCastlingMask(undoCastling[ply]);
+        enPassant = undoEnPassant[ply];
+        halfMoveClock = undoHalfMoveClock[ply];
+        zobristKey = undoZobristKeys[ply];
+        pawnKey = undoPawnKeys[ply];
+        checkers = undoCheckers[ply];
+        checkInfoValid = false;
+        materialScore = undoMaterialScores[ply];
+        positionScore = undoPositionScores[ply];
 
-                if(piece != null &&
-                   ! piece.getColor().equals(defendingColor) &&
-                   piece instanceof Pawn) return true;
-            }
-        }
+        activeColor = activeColor.inverse();
 
-        return false;
+        moves--;
     }
 
-    public int[] getPieces(Color color) {
-        return color.equals(Color.WHITE) ? whitePieces : blackPieces;
+    private void makeKingCastle(Color color) {
+        final int fromSquare = color.equals(Color.WHITE) ? 0x04 : 0x74;
+        final int toSquare = color.equals(Color.WHITE) ? 0x06 : 0x76;
+
+        zobristKey ^= stateKey();
+        halfMoveClock++;
+
+        // move the king
+        board[toSquare] = board[fromSquare];
+        board[fromSquare] = Pieces.EMPTY;
+
+        // move the rook
+        board[toSquare - 1] = board[fromSquare + 3];
+        board[fromSquare + 3] = Pieces.EMPTY;
+
+        togglePiece(board[toSquare], fromSquare);
+        togglePiece(board[toSquare], toSquare);
+        togglePiece(board[toSquare - 1], fromSquare + 3);
+        togglePiece(board[toSquare - 1], toSquare - 1);
+
+        movePiece(board[toSquare], fromSquare, toSquare);
+        movePiece(board[toSquare - 1], fromSquare + 3, toSquare - 1);
+
+        // update the king and castling
+        if (color.equals(Color.WHITE)) {
+            whiteKing = toSquare;
+        } else {
+            blackKing = toSquare;
+        }
+
+        castling &= CASTLING_KEPT[fromSquare];
+
+        this.enPassant = Board.MAX_SQUARE;
+        activeColor = activeColor == Color.WHITE ? Color.BLACK : Color.WHITE;
+
+        zobristKey ^= stateKey();
+        checkers = computeCheckers();
     }
 
-    public List<Integer> getPiecsOfType(Color color, Class<? extends Piece> pieceType) {
-        final int[] pieces = getPieces(color);
-        final ArrayList<Integer> ret = new ArrayList<Integer>();
+    private void makeQueenCastle(Color color) {
+        final int fromSquare = color.equals(Color.WHITE) ? 0x04 : 0x74;
+        final int toSquare = color.equals(Color.WHITE) ? 0x02 : 0x72;
 
-        for (int p : pieces) {
-            if (p != Board.MAX_SQUARE && board[p].getClass().equals(pieceType)) {
-                ret.add(p);
-            }
+        zobristKey ^= stateKey();
+        halfMoveClock++;
+
+        // move the king
+        board[toSquare] = board[fromSquare];
+        board[fromSquare] = Pieces.EMPTY;
+
+        // move the rook
+        board[toSquare + 1] = board[fromSquare - 4];
+        board[fromSquare - 4] = Pieces.EMPTY;
+
+        togglePiece(board[toSquare], fromSquare);
+        togglePiece(board[toSquare], toSquare);
+        togglePiece(board[toSquare + 1], fromSquare - 4);
+        togglePiece(board[toSquare + 1], toSquare + 1);
+
+        movePiece(board[toSquare], fromSquare, toSquare);
+        movePiece(board[toSquare + 1], fromSquare - 4, toSquare + 1);
+
+        // update the king and castling
+        if (color.equals(Color.WHITE)) {
+            whiteKing = toSquare;
+        } else {
+            blackKing = toSquare;
         }
 
-        return ret;
+        castling &= CASTLING_KEPT[fromSquare];
+
+        this.enPassant = Board.MAX_SQUARE;
+        activeColor = activeColor == Color.WHITE ? Color.BLACK : Color.WHITE;
+
+        zobristKey ^= stateKey();
+        checkers = computeCheckers();
     }
 
-    public static final class State {
-        private boolean whiteKingCastle = false;
-        private boolean whiteQueenCastle = false;
-        private boolean blackKingCastle = false;
-        private boolean blackQueenCastle = false;
+    /**
+     * For debug use only.
+     *
+     * Checks the board by going through the piece lists and making sure each
+     * piece is on the board, then the whole board is checked to make sure all
+     * pieces are accounted for.
+     *
+     * Finally the bitboards, keys and evaluation terms are recomputed and compared.
+     * @throws IllegalMoveException
+     */
+    public void checkBoard() throws IllegalMoveException {
+        // check the piece lists against the board
+        for (int piece = 0; piece < Pieces.CODES; ++piece) {
+            for (int i = 0; i < pieceCounts[piece]; ++i) {
+                final int p = pieceLists[piece][i];
+
+                if (board[p] != piece || pieceIndex[p] != i) {
+                    System.out.println("PIECE LIST DOES NOT MATCH THE BOARD: 0x" + Integer.toHexString(p));
+                    System.out.println(this.toString());
+                    throw new IllegalMoveException("PIECE LIST DOES NOT MATCH THE BOARD: 0x" + Integer.toHexString(p));
+                }
+            }
+        }
 
-        private int enPassant = Board.MAX_SQUARE;
-        private Piece capturedPiece;
+        for (int i = 0; i < Board.MAX_SQUARE; ++i) {
+            if (board[i] == Pieces.EMPTY) {
+                continue;
+            }
 
-        public State(Board board) {
-            this.whiteKingCastle = board.whiteKingCastle;
-            this.whiteQueenCastle = board.whiteQueenCastle;
-            this.blackKingCastle = board.blackKingCastle;
-            this.blackQueenCastle = board.blackQueenCastle;
-            this.enPassant = board.enPassant;
+            if (pieceIndex[i] >= pieceCounts[board[i]] || pieceLists[board[i]][pieceIndex[i]] != i) {
+                throw new IllegalMoveException("BOARD PIECE NOT FOUND: 0x" + Integer.toHexString(i));
+            }
         }
 
-        /**
-         * @return the capturedPiece
-         */
-        public Piece getCapturedPiece() {
-            return capturedPiece;
+        // make sure the bitboards match the board
+        final long[][] savedBitboards = new long[][] { Arrays.copyOf(bitboards[Bitboards.WHITE], Bitboards.PIECE_TYPES),
+                                                       Arrays.copyOf(bitboards[Bitboards.BLACK], Bitboards.PIECE_TYPES) };
+        final long savedOccupied = occupied;
+        final long savedZobristKey = zobristKey;
+        final long savedPawnKey = pawnKey;
+        final int savedMaterialScore = materialScore;
+        final int savedPositionScore = positionScore;
+
+        computeBitboards();
+
+        if (!Arrays.deepEquals(savedBitboards, bitboards) || savedOccupied != occupied) {
+            throw new IllegalMoveException("BITBOARDS DO NOT MATCH THE BOARD");
         }
 
-        /**
-         * @param capturedPiece
-         *            the capturedPiece to set
-         */
-        public void setCapturedPiece(Piece capturedPiece) {
-            this.capturedPiece = capturedPiece;
+        if (savedZobristKey != zobristKey || savedPawnKey != pawnKey) {
+            throw new IllegalMoveException("ZOBRIST KEYS DO NOT MATCH THE BOARD");
         }
 
-        /**
-         * @return the whiteKingCastle
-         */
-        public boolean isWhiteKingCastle() {
-            return whiteKingCastle;
+        if (savedMaterialScore != materialScore || savedPositionScore != positionScore) {
+            throw new IllegalMoveException("EVALUATION TERMS DO NOT MATCH THE BOARD");
         }
 
-        /**
-         * @return the whiteQueenCastle
-         */
-        public boolean isWhiteQueenCastle() {
-            return whiteQueenCastle;
+        if (checkers != computeCheckers()) {
+            throw new IllegalMoveException("CHECKERS DO NOT MATCH THE BOARD");
         }
+    }
 
-        /**
-         * @return the blackKingCastle
-         */
-        public boolean isBlackKingCastle() {
-            return blackKingCastle;
+    /**
+     * Checks if the piece on a square attacks another square.
+     *
+     * The {@link Deltas} table rules out pieces that can't move along the vector between the
+     * squares, so only a slider has to look at the squares in between.
+     *
+     * @param fromSquare the square of the attacking piece.
+     * @param toSquare the square being attacked.
+     * @return true if there is a piece on the from square and it attacks the to square.
+     */
+    public boolean attacks(int fromSquare, int toSquare) {
+        final int piece = board[fromSquare];
+
+        if (piece == Pieces.EMPTY || (toSquare & 0x88) != 0 || !Deltas.canAttack(piece, fromSquare, toSquare)) {
+            return false;
         }
 
-        /**
-         * @return the blackQueenCastle
-         */
-        public boolean isBlackQueenCastle() {
-            return blackQueenCastle;
+        final int step = Deltas.step(fromSquare, toSquare);
+
+        for (int square = fromSquare + step; square != toSquare; square += step) {
+            if (board[square] != Pieces.EMPTY) {
+                return false;
+            }
         }
 
-        /**
-         * @return the enPassant
-         */
-        public int getEnPassant() {
-            return enPassant;
+        return true;
+    }
+
+    /**
+     * Checks to see if a color is in check or not.
+     * @param color the color to check.
+     * @return True if that color's King is in check, false otherwise.
+     */
+    public boolean isInCheck(Color color) {
+        // the side to move's checkers are kept up to date by makeMove
+        if (color.equals(activeColor)) {
+            return checkers != 0;
+        }
+
+        return isSquareAttacked(color, color.equals(Color.WHITE) ? whiteKing : blackKing);
+    }
+
+    /**
+     * Given a color and a square, see if the square is being attacked by the opposite color.
+     *
+     * @param defendingColor the color of the non-attacking player.
+     * @param square the square to check.
+     * @return True if the square is being attacked by the opposite color.
+     */
+    public boolean isSquareAttacked(Color defendingColor, int square) {
+        final int index = Bitboards.toIndex(square);
+        final int defender = Bitboards.colorIndex(defendingColor);
+        final long[] attackers = bitboards[defender ^ 1];
+
+        // a square is attacked by a pawn if a defending pawn on the square would attack that pawn
+        if((Bitboards.PAWN_ATTACKS[defender][index] & attackers[Bitboards.PAWN]) != 0) return true;
+        if((Bitboards.KNIGHT_ATTACKS[index] & attackers[Bitboards.KNIGHT]) != 0) return true;
+        if((Bitboards.KING_ATTACKS[index] & attackers[Bitboards.KING]) != 0) return true;
+
+        final long queens = attackers[Bitboards.QUEEN];
+
+        if((Bitboards.rookAttacks(index, occupied) & (attackers[Bitboards.ROOK] | queens)) != 0) return true;
+        if((Bitboards.bishopAttacks(index, occupied) & (attackers[Bitboards.BISHOP] | queens)) != 0) return true;
+
+        return false;
+    }
+
+    /**
+     * Finds all the pieces of a color that attack a square.
+     * @param index the bit index of the square.
+     * @param attacker the color index of the attacking pieces.
+     * @param occupied the occupied squares to use for the sliding pieces.
+     * @return the attacking pieces.
+     */
+    private long attackers(int index, int attacker, long occupied) {
+        final long[] pieces = bitboards[attacker];
+        final long queens = pieces[Bitboards.QUEEN];
+
+        return (Bitboards.PAWN_ATTACKS[attacker ^ 1][index] & pieces[Bitboards.PAWN]) |
+               (Bitboards.KNIGHT_ATTACKS[index] & pieces[Bitboards.KNIGHT]) |
+               (Bitboards.KING_ATTACKS[index] & pieces[Bitboards.KING]) |
+               (Bitboards.rookAttacks(index, occupied) & (pieces[Bitboards.ROOK] | queens)) |
+               (Bitboards.bishopAttacks(index, occupied) & (pieces[Bitboards.BISHOP] | queens));
+    }
+
+    /**
+     * Returns the squares of all of a color's pieces. This allocates, so the search should use
+     * {@link #getPiecesOfType(Color, int, int[])} instead.
+     * @param color the color of the pieces.
+     * @return the squares of the pieces, padded with {@link #MAX_SQUARE}.
+     */
+    public int[] getPieces(Color color) {
+        final int[] ret = new int[MAX_PIECES];
+        int count = 0;
+
+        for (int type = Bitboards.PAWN; type <= Bitboards.KING; ++type) {
+            count += getPiecesOfType(color, type, ret, count);
         }
+
+        Arrays.fill(ret, count, MAX_PIECES, Board.MAX_SQUARE);
+        return ret;
+    }
+
+    /**
+     * Fills a buffer with the squares of a color's pieces of one type, in no particular order.
+     * @param color the color of the pieces.
+     * @param type the type of piece, one of the types in {@link Bitboards}.
+     * @param squares the buffer to fill, at least {@link #MAX_PIECES} long.
+     * @return the number of squares placed at the start of the buffer.
+     */
+    public int getPiecesOfType(Color color, int type, int[] squares) {
+        return getPiecesOfType(color, type, squares, 0);
+    }
+
+    private int getPiecesOfType(Color color, int type, int[] squares, int offset) {
+        final int piece = Pieces.make(Bitboards.colorIndex(color), type);
+
+        System.arraycopy(pieceLists[piece], 0, squares, offset, pieceCounts[piece]);
+        return pieceCounts[piece];
     }
 }
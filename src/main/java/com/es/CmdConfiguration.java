@@ -24,6 +24,21 @@ public class CmdConfiguration extends AbstractConfiguration {
     public static final String TRANSPOSITION_TABLE_SIZE = "trans-table-size";
     public static final String MODE = "mode";
     public static final String DEPTH = "depth";
+    public static final String FEN = "fen";
+    public static final String EPD_FILE = "epd-file";
+    public static final String DIVIDE = "divide";
+    public static final String THREADS = "threads";
+    public static final String SPLIT_DEPTH = "split-depth";
+    public static final String SPEEDUP = "speedup";
+    public static final String PERFT_HASH_SIZE = "perft-hash-size";
+    public static final String SEARCH = "search";
+    public static final String EVALUATE = "evaluate";
+    public static final String BASELINE = "baseline";
+    public static final String SAVE_BASELINE = "save-baseline";
+    public static final String MOVE_TIME = "move-time";
+    public static final String RESULTS_FILE = "results-file";
+    public static final String CHECKS_ONLY = "checks-only";
+    public static final String MATE_HASH_SIZE = "mate-hash-size";
     
     private Options options;
     private CommandLine commandLine = null;
@@ -48,7 +63,7 @@ public class CmdConfiguration extends AbstractConfiguration {
         @SuppressWarnings("static-access")
         final Option modeOption = OptionBuilder.withLongOpt(MODE)
                                                .hasArg()
-                                               .withDescription("The mode to run the engine in: GUI or UCI. Default is GUI.")
+                                               .withDescription("The mode to run the engine in: GUI, UCI, PERFT, BENCH, SUITE or MATE. Default is GUI.")
                                                .create("m");
 
         @SuppressWarnings("static-access")
@@ -57,14 +72,109 @@ public class CmdConfiguration extends AbstractConfiguration {
                                                 .withDescription("The number of nodes to search")
                                                 .create("d");
 
+        @SuppressWarnings("static-access")
+        final Option fenOption = OptionBuilder.withLongOpt(FEN)
+                                              .hasArg()
+                                              .withArgName("fen")
+                                              .withDescription("The position for PERFT mode. Default is the starting position.")
+                                              .create();
+
+        @SuppressWarnings("static-access")
+        final Option epdOption = OptionBuilder.withLongOpt(EPD_FILE)
+                                              .hasArg()
+                                              .withArgName("suite.epd")
+                                              .withDescription("EPD file of positions for PERFT mode, checked against their D1 to D6 counts, or the suite for SUITE or MATE mode.")
+                                              .create("e");
+
+        @SuppressWarnings("static-access")
+        final Option threadsOption = OptionBuilder.withLongOpt(THREADS)
+                                                  .hasArg()
+                                                  .withDescription("The number of threads for PERFT, SUITE and MATE modes. Default is the number of processors.")
+                                                  .create("j");
+
+        @SuppressWarnings("static-access")
+        final Option splitOption = OptionBuilder.withLongOpt(SPLIT_DEPTH)
+                                                .hasArg()
+                                                .withDescription("The number of plies PERFT splits into parallel tasks. Default is 2.")
+                                                .create();
+
+        @SuppressWarnings("static-access")
+        final Option perftHashOption = OptionBuilder.withLongOpt(PERFT_HASH_SIZE)
+                                                    .hasArg()
+                                                    .withArgName("MB")
+                                                    .withDescription("The size of the PERFT count cache in megabytes, 0 for none. Default is 0.")
+                                                    .create();
+
+        @SuppressWarnings("static-access")
+        final Option searchOption = OptionBuilder.withLongOpt(SEARCH)
+                                                 .hasArg()
+                                                 .withDescription("The search for BENCH and SUITE modes: MiniMax, NegaMax or NegaScout. Default is NegaMax.")
+                                                 .create();
+
+        @SuppressWarnings("static-access")
+        final Option evaluateOption = OptionBuilder.withLongOpt(EVALUATE)
+                                                   .hasArg()
+                                                   .withDescription("The evaluation for BENCH and SUITE modes: PieceOnly, PositionOnly or Simple. Default is Simple.")
+                                                   .create();
+
+        @SuppressWarnings("static-access")
+        final Option baselineOption = OptionBuilder.withLongOpt(BASELINE)
+                                                   .hasArg()
+                                                   .withArgName("bench.properties")
+                                                   .withDescription("A saved BENCH result to compare the node count and speed against.")
+                                                   .create();
+
+        @SuppressWarnings("static-access")
+        final Option saveBaselineOption = OptionBuilder.withLongOpt(SAVE_BASELINE)
+                                                       .hasArg()
+                                                       .withArgName("bench.properties")
+                                                       .withDescription("A file to save the BENCH result in, to use as a baseline later.")
+                                                       .create();
+
+        @SuppressWarnings("static-access")
+        final Option moveTimeOption = OptionBuilder.withLongOpt(MOVE_TIME)
+                                                   .hasArg()
+                                                   .withArgName("ms")
+                                                   .withDescription("The time SUITE and MATE modes spend on each position, 0 for no limit. Default is 0.")
+                                                   .create();
+
+        @SuppressWarnings("static-access")
+        final Option resultsOption = OptionBuilder.withLongOpt(RESULTS_FILE)
+                                                  .hasArg()
+                                                  .withArgName("results.csv")
+                                                  .withDescription("A CSV file for the SUITE or MATE result of each position.")
+                                                  .create();
+
+        @SuppressWarnings("static-access")
+        final Option mateHashOption = OptionBuilder.withLongOpt(MATE_HASH_SIZE)
+                                                   .hasArg()
+                                                   .withArgName("MB")
+                                                   .withDescription("The size of each MATE thread's table in megabytes. Default is 16.")
+                                                   .create();
+
         // add all the options from above
         options.addOption(fileOption);
         options.addOption(transOption);
         options.addOption(modeOption);
         options.addOption(depthOption);
+        options.addOption(fenOption);
+        options.addOption(epdOption);
+        options.addOption(threadsOption);
+        options.addOption(splitOption);
+        options.addOption(perftHashOption);
+        options.addOption(searchOption);
+        options.addOption(evaluateOption);
+        options.addOption(baselineOption);
+        options.addOption(saveBaselineOption);
+        options.addOption(moveTimeOption);
+        options.addOption(resultsOption);
+        options.addOption(mateHashOption);
 
         // add new simple options
         options.addOption(new Option("h", "help", false, "Print this help message"));
+        options.addOption(new Option(null, DIVIDE, false, "Print the PERFT count below each root move"));
+        options.addOption(new Option(null, SPEEDUP, false, "Time PERFT with 1, 2, 4... threads up to --threads"));
+        options.addOption(new Option(null, CHECKS_ONLY, false, "Only try checks for the attacker in MATE mode"));
     }
     
     public boolean parse(String[] args) {
@@ -106,7 +216,10 @@ public class CmdConfiguration extends AbstractConfiguration {
     }
 
     public Object getProperty(String arg) {
-            return commandLine.getOptionValue(arg);
+        final String value = commandLine.getOptionValue(arg);
+
+        // flags without an argument are true when they're given
+        return value == null && commandLine.hasOption(arg) ? "true" : value;
     }
 
     public boolean isEmpty() {
@@ -0,0 +1,99 @@
+package com.es;
+
+import com.es.pieces.Pieces;
+
+/**
+ * The 0x88 difference tables, for testing if a piece attacks a square without generating its moves.
+ *
+ * The difference between two 0x88 squares uniquely identifies the vector between them, so
+ * (to - from + {@link #OFFSET}) indexes a 240 entry table of which pieces can attack along that
+ * vector, and the single step to walk it. A slider then only needs to check the squares between.
+ */
+public final class Deltas {
+
+    /**
+     * Added to the difference between two squares to make it an index into the tables.
+     */
+    public static final int OFFSET = 119;
+
+    public static final int SIZE = 240;
+
+    /**
+     * The piece codes that can attack along a vector, one bit per code: (1 << code).
+     */
+    private static final int[] ATTACKERS = new int[SIZE];
+
+    /**
+     * The step to walk along a vector; leapers step straight to the target.
+     */
+    private static final int[] STEPS = new int[SIZE];
+
+    private static final int[] ORTHOGONALS = { 0x10, -0x10, 0x01, -0x01 };
+    private static final int[] DIAGONALS = { 0x11, -0x11, 0x0f, -0x0f };
+
+    static {
+        final int rooks = codeBits(Bitboards.ROOK) | codeBits(Bitboards.QUEEN);
+        final int bishops = codeBits(Bitboards.BISHOP) | codeBits(Bitboards.QUEEN);
+
+        for(int step:ORTHOGONALS) {
+            addRay(step, rooks);
+        }
+
+        for(int step:DIAGONALS) {
+            addRay(step, bishops);
+        }
+
+        for(int delta:Pieces.KNIGHT_DELTAS) {
+            add(delta, delta, codeBits(Bitboards.KNIGHT));
+        }
+
+        for(int delta:Pieces.KING_DELTAS) {
+            add(delta, delta, codeBits(Bitboards.KING));
+        }
+
+        // pawns only attack forward
+        add(0x0f, 0x0f, 1 << Pieces.WHITE_PAWN);
+        add(0x11, 0x11, 1 << Pieces.WHITE_PAWN);
+        add(-0x0f, -0x0f, 1 << Pieces.BLACK_PAWN);
+        add(-0x11, -0x11, 1 << Pieces.BLACK_PAWN);
+    }
+
+    private Deltas() {
+    }
+
+    private static int codeBits(int type) {
+        return (1 << Pieces.make(Bitboards.WHITE, type)) | (1 << Pieces.make(Bitboards.BLACK, type));
+    }
+
+    private static void addRay(int step, int codes) {
+        for(int distance=1; distance < 8; ++distance) {
+            add(step * distance, step, codes);
+        }
+    }
+
+    private static void add(int delta, int step, int codes) {
+        ATTACKERS[delta + OFFSET] |= codes;
+        STEPS[delta + OFFSET] = step;
+    }
+
+    /**
+     * Checks if a piece could attack along the vector between two squares, ignoring what's in the way.
+     * @param piece the code of the piece.
+     * @param fromSquare the square the piece is on.
+     * @param toSquare the square being attacked.
+     * @return true if the piece moves along that vector.
+     */
+    public static boolean canAttack(int piece, int fromSquare, int toSquare) {
+        return (ATTACKERS[toSquare - fromSquare + OFFSET] & (1 << piece)) != 0;
+    }
+
+    /**
+     * Returns the step to walk from one square towards another, or 0 if they aren't on a line or a leap.
+     * @param fromSquare the square to start from.
+     * @param toSquare the square to walk towards.
+     * @return the step to add to a square to move towards the target.
+     */
+    public static int step(int fromSquare, int toSquare) {
+        return STEPS[toSquare - fromSquare + OFFSET];
+    }
+}
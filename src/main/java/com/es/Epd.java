@@ -0,0 +1,161 @@
+package com.es;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A position and its operations from one line of an EPD file.
+ *
+ * The position is parsed straight into a {@link Board}, which can be reused from line to line
+ * when streaming a large file. The bm and am moves are in standard algebraic notation and are
+ * turned into moves on the position while it's parsed; id is kept as text, and D1 to D6 are
+ * perft node counts. The mate puzzles use bm #N for a mate in N, which is kept as a number.
+ * Any other operation is available as text from {@link #getOperation(String)}.
+ */
+public final class Epd {
+
+    public static final int MAX_PERFT_DEPTH = 6;
+
+    private static final int[] NO_MOVES = new int[0];
+
+    private final Board board;
+    private final Map<String, String> operations = new LinkedHashMap<String, String>();
+    private final long[] perftCounts = new long[MAX_PERFT_DEPTH + 1];   // [depth]
+    private int[] bestMoves = NO_MOVES;
+    private int[] avoidMoves = NO_MOVES;
+    private int mateIn;
+
+    private Epd(Board board) {
+        this.board = board;
+        Arrays.fill(perftCounts, -1L);
+    }
+
+    /**
+     * Parses an EPD line onto a new board.
+     * @param line the EPD line.
+     * @return the parsed line.
+     * @throws IllegalMoveException if a bm or am move isn't legal in the position.
+     */
+    public static Epd parse(CharSequence line) throws IllegalMoveException {
+        return parse(line, new Board());
+    }
+
+    /**
+     * Parses an EPD line onto an existing board, replacing whatever position it had.
+     * @param line the EPD line; the position can have the FEN clocks after it.
+     * @param board the board to set up.
+     * @return the parsed line, which shares the board.
+     * @throws IllegalMoveException if a bm or am move isn't legal in the position.
+     */
+    public static Epd parse(CharSequence line, Board board) throws IllegalMoveException {
+        final Epd ret = new Epd(board);
+        int i = board.parsePosition(line, 0);
+
+        // the operations end with a semicolon, unless it's inside a quoted operand
+        while (i < line.length()) {
+            final int start = Board.skipSpaces(line, i);
+            boolean quoted = false;
+
+            for (i = start; i < line.length() && (quoted || line.charAt(i) != ';'); ++i) {
+                if (line.charAt(i) == '"') {
+                    quoted = !quoted;
+                }
+            }
+
+            ret.addOperation(line.subSequence(start, i).toString().trim());
+            ++i;
+        }
+
+        return ret;
+    }
+
+    private void addOperation(String operation) throws IllegalMoveException {
+        if (operation.isEmpty()) {
+            return;
+        }
+
+        final int space = operation.indexOf(' ');
+        final String opcode = space < 0 ? operation : operation.substring(0, space);
+        String operand = space < 0 ? "" : operation.substring(space + 1).trim();
+
+        if (operand.length() > 1 && operand.startsWith("\"") && operand.endsWith("\"")) {
+            operand = operand.substring(1, operand.length() - 1);
+        }
+
+        operations.put(opcode, operand);
+
+        if (opcode.equals("bm") && operand.startsWith("#")) {
+            mateIn = Integer.parseInt(operand.substring(1));
+        } else if (opcode.equals("bm")) {
+            bestMoves = parseMoves(operand);
+        } else if (opcode.equals("am")) {
+            avoidMoves = parseMoves(operand);
+        } else if (opcode.length() == 2 && opcode.charAt(0) == 'D' && opcode.charAt(1) >= '1' && opcode.charAt(1) <= '0' + MAX_PERFT_DEPTH) {
+            perftCounts[opcode.charAt(1) - '0'] = Long.parseLong(operand);
+        }
+    }
+
+    private int[] parseMoves(String operand) throws IllegalMoveException {
+        final String[] sans = operand.split(" +");
+        final int[] ret = new int[sans.length];
+        final PgnUtils utils = new PgnUtils(board);
+
+        for (int i = 0; i < sans.length; ++i) {
+            ret[i] = utils.parseMove(sans[i]);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Returns the board with the position; if it's being reused, only until the next line is parsed onto it.
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    public String getId() {
+        return operations.get("id");
+    }
+
+    /**
+     * Returns the moves from the bm operation, empty if there isn't one or it's a mate in N.
+     */
+    public int[] getBestMoves() {
+        return bestMoves;
+    }
+
+    /**
+     * Returns the moves from the am operation, empty if there isn't one.
+     */
+    public int[] getAvoidMoves() {
+        return avoidMoves;
+    }
+
+    /**
+     * Returns the N from bm #N, or 0 if the line isn't a mate puzzle. A negative N is a defence:
+     * the side to move is the one that gets mated.
+     */
+    public int getMateIn() {
+        return mateIn;
+    }
+
+    /**
+     * Returns the perft node count from a D1 to D6 operation.
+     * @param depth the depth, from 1 to {@link #MAX_PERFT_DEPTH}.
+     * @return the node count, or -1 if the line doesn't have one for that depth.
+     */
+    public long getPerftCount(int depth) {
+        return perftCounts[depth];
+    }
+
+    /**
+     * Returns the operand of any operation, without its quotes.
+     * @param opcode the operation's opcode.
+     * @return the operand, an empty string for an operation without one, or null if the line doesn't have the operation.
+     */
+    public String getOperation(String opcode) {
+        return operations.get(opcode);
+    }
+}
@@ -0,0 +1,131 @@
+package com.es;
+
+/**
+ * Magic bitboard attack tables for the sliding pieces.
+ *
+ * For each square the relevant blockers are masked out of the occupancy, multiplied by a magic
+ * number and shifted down to form an index into a table of pre-computed attack sets. The tables
+ * are filled in once when the class is loaded.
+ *
+ * The magic numbers were found offline with a random search for sparse numbers that map every
+ * blocker subset of a square without a destructive collision.
+ */
+public final class Magics {
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final long[][] ROOK_ATTACKS = new long[64][];
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] BISHOP_ATTACKS = new long[64][];
+
+    private static final long[] ROOK_MAGICS = {
+        0x008000908064C000L, 0x0040200040001000L, 0x0180100080A0010AL, 0x8880041000800800L,
+        0x1200100201200804L, 0x0200020004011008L, 0x2180010000800600L, 0x0200005088210204L,
+        0x0000800080204001L, 0x1000804000802001L, 0x8240801000200080L, 0x8611001004200900L,
+        0x008180800C001800L, 0x0100800200800400L, 0x0A02000102000408L, 0x8020802300104280L,
+        0x0080004000402000L, 0xE010104000402000L, 0x0800808010002000L, 0xA280210008100100L,
+        0x0001818014000800L, 0xA002010100080400L, 0x0008040088020130L, 0x0001020004048845L,
+        0x0081826280004004L, 0x2020810900284000L, 0x0200100080802000L, 0x0200080080100080L,
+        0x8083080100100500L, 0x4406000901000400L, 0x0005020080800100L, 0x0090204200008114L,
+        0x0010400094800420L, 0x0900804000802002L, 0x0201001841002000L, 0x4100080080801000L,
+        0x4540040080800800L, 0x0000800400800200L, 0x9281800100808200L, 0x8004048102000854L,
+        0x4420802040008006L, 0x0880500020004002L, 0x0801200241050010L, 0x8400080010008080L,
+        0x0008000500090010L, 0x0082009084020008L, 0x4012000108020004L, 0x9000104D08860004L,
+        0x2004204114800100L, 0x0148802112400300L, 0x0202842000100880L, 0x001B080080900080L,
+        0x001A002008100600L, 0x0004008004020080L, 0x5181000600040300L, 0x0000044401128A00L,
+        0x8044110480002441L, 0x1023012082044112L, 0x00804080200A0012L, 0x000420310A004A42L,
+        0x0023001004020801L, 0x0882001008040102L, 0x000230088118020CL, 0x0000019025040042L
+    };
+
+    private static final long[] BISHOP_MAGICS = {
+        0x1010220204082A00L, 0x80E0020202002804L, 0x2008480104200020L, 0x000220920280002DL,
+        0x32040421000B0284L, 0x1002080404000400L, 0x0004160892080040L, 0x2203024206204201L,
+        0x0002404264010200L, 0x1120908408428124L, 0xB100424403002280L, 0x240008060440C288L,
+        0x2040040420490400L, 0x0100620210040022L, 0x0400084104202028L, 0x0010050080908820L,
+        0x0C90A04490824802L, 0x000200A008210130L, 0x0C08001000204010L, 0x0008000186014480L,
+        0x0601044820080021L, 0x0002000101013100L, 0x1400A08108080204L, 0x0250401104485410L,
+        0x4820240810142843L, 0x0009142A20182200L, 0x0848140048440020L, 0x2020120000400440L,
+        0x0108840200802003L, 0x0009070082009492L, 0x020C0C0038424245L, 0xCA44005808210410L,
+        0x8011212000500404L, 0x2028840510101008L, 0x0004042A00041400L, 0x0624020080980080L,
+        0x1820410040840040L, 0x2201004202050100L, 0x402A088A24040224L, 0x0242061040002400L,
+        0x90020202400821A0L, 0x00C9009004E01002L, 0x58C2060202023100L, 0x0000012214040800L,
+        0x0210846810100200L, 0x0004208081010200L, 0x01A4108404442100L, 0x8054082C80280106L,
+        0x0004144904104208L, 0x00324C0A11104000L, 0x1000020231040100L, 0x2080001042020004L,
+        0x0544021020288104L, 0x1103501408083020L, 0x4010451004960002L, 0x003010091C44902CL,
+        0x0102402884202000L, 0x0480804C00841086L, 0x04602C8602210400L, 0x0000004000420200L,
+        0x0040000020442C18L, 0x4483804089094100L, 0x80000B0248020400L, 0x0045010808008680L
+    };
+
+    static {
+        for(int index=0; index < 64; ++index) {
+            ROOK_MASKS[index] = relevantBlockers(index, Bitboards.ROOK_DELTAS);
+            ROOK_SHIFTS[index] = 64 - Long.bitCount(ROOK_MASKS[index]);
+            ROOK_ATTACKS[index] = new long[1 << Long.bitCount(ROOK_MASKS[index])];
+            fillAttacks(index, true, ROOK_MASKS[index], ROOK_MAGICS[index], ROOK_SHIFTS[index], ROOK_ATTACKS[index]);
+
+            BISHOP_MASKS[index] = relevantBlockers(index, Bitboards.BISHOP_DELTAS);
+            BISHOP_SHIFTS[index] = 64 - Long.bitCount(BISHOP_MASKS[index]);
+            BISHOP_ATTACKS[index] = new long[1 << Long.bitCount(BISHOP_MASKS[index])];
+            fillAttacks(index, false, BISHOP_MASKS[index], BISHOP_MAGICS[index], BISHOP_SHIFTS[index], BISHOP_ATTACKS[index]);
+        }
+    }
+
+    private Magics() {
+    }
+
+    /**
+     * Looks up the squares a rook attacks.
+     * @param index the bit index of the rook.
+     * @param occupied all the occupied squares.
+     * @return the attacked squares, including the first blocker in each direction.
+     */
+    public static long rookAttacks(int index, long occupied) {
+        return ROOK_ATTACKS[index][(int)(((occupied & ROOK_MASKS[index]) * ROOK_MAGICS[index]) >>> ROOK_SHIFTS[index])];
+    }
+
+    /**
+     * Looks up the squares a bishop attacks.
+     * @param index the bit index of the bishop.
+     * @param occupied all the occupied squares.
+     * @return the attacked squares, including the first blocker in each direction.
+     */
+    public static long bishopAttacks(int index, long occupied) {
+        return BISHOP_ATTACKS[index][(int)(((occupied & BISHOP_MASKS[index]) * BISHOP_MAGICS[index]) >>> BISHOP_SHIFTS[index])];
+    }
+
+    public static long queenAttacks(int index, long occupied) {
+        return rookAttacks(index, occupied) | bishopAttacks(index, occupied);
+    }
+
+    /**
+     * Computes the squares whose occupancy can change a slider's attacks. The last square of
+     * each ray is never needed as it is attacked whether or not it is occupied.
+     */
+    private static long relevantBlockers(int index, int[] deltas) {
+        final int square = Bitboards.toSquare(index);
+        long ret = 0;
+
+        for(int delta:deltas) {
+            for(int pos = square + delta; Board.isValidPosition(pos + delta); pos += delta) {
+                ret |= Bitboards.squareBit(pos);
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Fills in the attack table for a square by enumerating every subset of the relevant
+     * blockers using the carry-rippler trick.
+     */
+    private static void fillAttacks(int index, boolean rook, long mask, long magic, int shift, long[] attacks) {
+        long subset = 0;
+
+        do {
+            attacks[(int)((subset * magic) >>> shift)] = rook ? Bitboards.rookRayAttacks(index, subset) : Bitboards.bishopRayAttacks(index, subset);
+            subset = (subset - mask) & mask;
+        } while(subset != 0);
+    }
+}
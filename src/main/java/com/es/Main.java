@@ -8,7 +8,11 @@ import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.es.engines.BenchEngine;
 import com.es.engines.GuiEngine;
+import com.es.engines.MateEngine;
+import com.es.engines.PerftEngine;
+import com.es.engines.SuiteEngine;
 import com.es.engines.UciEngine;
 import com.fluxchess.jcpi.commands.IEngine;
 import com.fluxchess.jcpi.protocols.UciProtocol;
@@ -50,6 +54,14 @@ public class Main {
             engine = new GuiEngine(config);
         } else if("UCI".equalsIgnoreCase(mode)) {
             engine = new UciEngine(config, new UciProtocol(new BufferedReader(new InputStreamReader(System.in)), System.out));
+        } else if("PERFT".equalsIgnoreCase(mode)) {
+            engine = new PerftEngine(config);
+        } else if("BENCH".equalsIgnoreCase(mode)) {
+            engine = new BenchEngine(config);
+        } else if("SUITE".equalsIgnoreCase(mode)) {
+            engine = new SuiteEngine(config);
+        } else if("MATE".equalsIgnoreCase(mode)) {
+            engine = new MateEngine(config);
         } else {
             cmdConfig.printHelp();
             throw new ConfigurationException("A mode of " + mode + " is not supported");
@@ -59,7 +71,7 @@ public class Main {
             engine.run();  // start the game
         } catch(Exception e) {
             LOG.error("Caught exception in play()", e);
-            if("GUI".equalsIgnoreCase(mode)) {
+            if(!"UCI".equalsIgnoreCase(mode)) {
                 System.err.println("Caught exception in play(): " + e.getMessage());
             }
         }
@@ -71,6 +83,13 @@ public class Main {
         defaults.addProperty(CmdConfiguration.TRANSPOSITION_TABLE_SIZE, 100000);
         defaults.addProperty(CmdConfiguration.MODE, "GUI");
         defaults.addProperty(CmdConfiguration.DEPTH, 4);
+        defaults.addProperty(CmdConfiguration.THREADS, Runtime.getRuntime().availableProcessors());
+        defaults.addProperty(CmdConfiguration.SPLIT_DEPTH, 2);
+        defaults.addProperty(CmdConfiguration.PERFT_HASH_SIZE, 0);
+        defaults.addProperty(CmdConfiguration.SEARCH, "NegaMax");
+        defaults.addProperty(CmdConfiguration.EVALUATE, "Simple");
+        defaults.addProperty(CmdConfiguration.MOVE_TIME, 0);
+        defaults.addProperty(CmdConfiguration.MATE_HASH_SIZE, 16);
 
         return defaults;
     }
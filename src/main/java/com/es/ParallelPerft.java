@@ -0,0 +1,215 @@
+package com.es;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.es.ai.BoardStack;
+import com.es.ai.MoveList;
+
+/**
+ * Perft split across the threads of a {@link ForkJoinPool}.
+ *
+ * The moves in the first plies, down to the split depth, become tasks that the pool's threads steal
+ * from each other, so a thread that finishes a small subtree picks up part of a big one. Each task
+ * copies its parent's board onto a board from a {@link BoardStack} kept by its thread, and the tasks
+ * below the split depth count on it with a {@link Perft} kept by the thread. The threads can share
+ * a {@link PerftCache}.
+ */
+public final class ParallelPerft {
+
+    private final ForkJoinPool pool;
+    private final int splitDepth;
+    private final PerftCache cache;
+
+    // every thread's Perft, to add up their cache statistics
+    private final List<Perft> allPerfts = Collections.synchronizedList(new ArrayList<Perft>());
+
+    private final ThreadLocal<TaskBoards> taskBoards = new ThreadLocal<TaskBoards>() {
+        @Override
+        protected TaskBoards initialValue() {
+            return new TaskBoards();
+        }
+    };
+
+    private final ThreadLocal<Perft> perfts = new ThreadLocal<Perft>() {
+        @Override
+        protected Perft initialValue() {
+            final Perft ret = new Perft(cache);
+
+            allPerfts.add(ret);
+
+            return ret;
+        }
+    };
+
+    /**
+     * @param threads the number of threads in the pool.
+     * @param splitDepth the number of plies from the root that are split into tasks.
+     */
+    public ParallelPerft(int threads, int splitDepth) {
+        this(threads, splitDepth, null);
+    }
+
+    /**
+     * @param threads the number of threads in the pool.
+     * @param splitDepth the number of plies from the root that are split into tasks.
+     * @param cache the cache of counts shared by the threads, or null for none.
+     */
+    public ParallelPerft(int threads, int splitDepth, PerftCache cache) {
+        this.pool = new ForkJoinPool(threads);
+        this.splitDepth = splitDepth;
+        this.cache = cache;
+    }
+
+    /**
+     * Counts the leaf nodes below a position.
+     * @param board the position, which isn't changed.
+     * @param depth the depth to count to, at least 1.
+     * @return the number of leaf nodes.
+     */
+    public long perft(Board board, int depth) {
+        final Board root = new Board();
+
+        root.copyFrom(board);
+
+        return pool.invoke(new PerftTask(root, Board.NULL_MOVE, depth, 0));
+    }
+
+    /**
+     * Returns the number of times the threads looked in the cache.
+     */
+    public long getCacheProbes() {
+        long ret = 0;
+
+        synchronized (allPerfts) {
+            for (Perft perft : allPerfts) {
+                ret += perft.getCacheProbes();
+            }
+        }
+
+        return ret;
+    }
+
+    public long getCacheHits() {
+        long ret = 0;
+
+        synchronized (allPerfts) {
+            for (Perft perft : allPerfts) {
+                ret += perft.getCacheHits();
+            }
+        }
+
+        return ret;
+    }
+
+    public int getThreads() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Stops the pool's threads once the running counts are done.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * The boards and move buffers of one thread's tasks.
+     *
+     * A thread waiting on a task's children can run other tasks, which may not be from below that
+     * task, so the boards are handed out by how deeply the thread's tasks are nested rather than by
+     * ply. A task's board stays in use until its children are done, and the children only read it.
+     */
+    private static final class TaskBoards {
+        final BoardStack boards = new BoardStack(new Board());
+        final MoveList moveLists = new MoveList();
+        int nested;
+    }
+
+    /**
+     * Counts the leaf nodes below a move made on a parent position, which the task doesn't change.
+     */
+    private final class PerftTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Board parent;
+        private final int move;
+        private final int depth;
+        private final int ply;
+
+        PerftTask(Board parent, int move, int depth, int ply) {
+            this.parent = parent;
+            this.move = move;
+            this.depth = depth;
+            this.ply = ply;
+        }
+
+        @Override
+        protected Long compute() {
+            final TaskBoards local = taskBoards.get();
+            final int level = local.nested++;
+
+            try {
+                // deeper nesting than the stack holds is very unlikely, fall back to allocating
+                final boolean stacked = level < local.moveLists.getMaxPly();
+                final Board board = stacked ? position(local.boards, level) : position(new Board());
+
+                // small subtrees aren't worth splitting
+                if (ply >= splitDepth || depth <= 2) {
+                    return perfts.get().perft(board, depth);
+                }
+
+                final int[] moves = stacked ? local.moveLists.getMoves(level) : new int[Board.MAX_MOVES];
+                final int count = board.generateAllMoves(moves);
+                final PerftTask[] tasks = new PerftTask[count];
+
+                for (int i = 0; i < count; ++i) {
+                    tasks[i] = new PerftTask(board, moves[i], depth - 1, ply + 1);
+                }
+
+                invokeAll(tasks);
+
+                long nodes = 0;
+
+                for (PerftTask task : tasks) {
+                    nodes += task.join();
+                }
+
+                return nodes;
+            } catch (IllegalMoveException e) {
+                throw new IllegalStateException("Generated an illegal move", e);
+            } finally {
+                local.nested--;
+            }
+        }
+
+        /**
+         * Copy-makes the task's move from the parent position onto a level of a stack.
+         */
+        private Board position(BoardStack boards, int level) {
+            if (move == Board.NULL_MOVE) {
+                boards.get(level).copyFrom(parent);
+                return boards.get(level);
+            }
+
+            return boards.copyMake(parent, level, move);
+        }
+
+        /**
+         * Sets a board up with the parent position and the task's move made on it.
+         */
+        private Board position(Board board) {
+            board.copyFrom(parent);
+
+            if (move != Board.NULL_MOVE) {
+                board.makeMoveWithoutUndo(move);
+            }
+
+            return board;
+        }
+    }
+}
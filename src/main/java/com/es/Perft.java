@@ -0,0 +1,104 @@
+package com.es;
+
+import com.es.ai.MoveList;
+
+/**
+ * Counts the leaf nodes of the move tree to a fixed depth, for checking and timing the move generator.
+ *
+ * The last ply is bulk counted: the moves one ply from the leaves are counted with
+ * {@link Board#countLegalMoves()} instead of being made. With a {@link PerftCache} the counts of
+ * the positions above that are cached, so a position reached by another move order isn't counted again.
+ */
+public final class Perft {
+
+    private final MoveList moveList = new MoveList();
+    private final PerftCache cache;
+
+    private long cacheProbes;
+    private long cacheHits;
+
+    public Perft() {
+        this(null);
+    }
+
+    /**
+     * @param cache the cache of counts, which can be shared with other Perfts; null for none.
+     */
+    public Perft(PerftCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Counts the leaf nodes below a position.
+     * @param board the position, which is left as it was.
+     * @param depth the depth to count to, at least 1.
+     * @return the number of leaf nodes.
+     */
+    public long perft(Board board, int depth) throws IllegalMoveException {
+        return perft(board, depth, 0);
+    }
+
+    private long perft(Board board, int depth, int ply) throws IllegalMoveException {
+        if (depth == 1) {
+            return board.countLegalMoves();
+        }
+
+        if (cache != null) {
+            final long cached = cache.probe(board.getZobristKey(), depth);
+
+            ++cacheProbes;
+
+            if (cached >= 0) {
+                ++cacheHits;
+                return cached;
+            }
+        }
+
+        final int count = moveList.generate(board, ply);
+        final int[] moves = moveList.getMoves(ply);
+        long nodes = 0;
+
+        for (int i = 0; i < count; ++i) {
+            board.makeMove(moves[i], false);
+            nodes += perft(board, depth - 1, ply + 1);
+            board.undoMove();
+        }
+
+        if (cache != null) {
+            cache.store(board.getZobristKey(), depth, nodes);
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Counts the leaf nodes below each of the root moves, to find which move a wrong count comes from.
+     * @param board the position, which is left as it was.
+     * @param depth the depth to count to, at least 1.
+     * @param moves filled with the root moves, at least {@link Board#MAX_MOVES} long.
+     * @param counts filled with the leaf nodes below each root move.
+     * @return the number of root moves.
+     */
+    public int divide(Board board, int depth, int[] moves, long[] counts) throws IllegalMoveException {
+        final int count = board.generateAllMoves(moves);
+
+        for (int i = 0; i < count; ++i) {
+            board.makeMove(moves[i], false);
+            counts[i] = depth == 1 ? 1 : perft(board, depth - 1, 0);
+            board.undoMove();
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the number of times the cache was looked in, 0 without a cache.
+     */
+    public long getCacheProbes() {
+        return cacheProbes;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+}
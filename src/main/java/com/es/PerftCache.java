@@ -0,0 +1,87 @@
+package com.es;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size cache of perft counts, keyed by the Zobrist key of the position and the depth.
+ *
+ * Each bucket has two entries: the first keeps the deepest count stored in the bucket, as it saves
+ * the most work when it's hit, and the second is replaced every time. A hit needs the whole 64-bit
+ * key to match, not just the bucket index, so different positions don't share counts.
+ *
+ * An entry is two longs, the count and depth packed together and the key XORed with them, so a
+ * probe can tell when another thread wrote half of an entry and treat it as a miss. The cache can
+ * be shared by the threads of a {@link ParallelPerft} without locking.
+ */
+public final class PerftCache {
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int DEPTH_BITS = 8;
+    private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+
+    private final long[] keys;  // the key XORed with the data
+    private final long[] data;  // (count << DEPTH_BITS) | depth
+    private final int bucketMask;
+
+    /**
+     * @param megabytes the size of the cache, rounded down to a power of 2 entries.
+     */
+    public PerftCache(int megabytes) {
+        final int entries = Integer.highestOneBit((int) Math.min(Integer.MAX_VALUE, Math.max(2L, (long) megabytes * 1024 * 1024 / ENTRY_BYTES)));
+
+        this.keys = new long[entries];
+        this.data = new long[entries];
+        this.bucketMask = entries / 2 - 1;
+    }
+
+    /**
+     * Looks up the count for a position.
+     * @param key the Zobrist key of the position.
+     * @param depth the depth of the count.
+     * @return the count, or -1 if it isn't in the cache.
+     */
+    public long probe(long key, int depth) {
+        final int index = ((int) key & bucketMask) << 1;
+
+        for (int i = index; i < index + 2; ++i) {
+            final long entry = data[i];
+
+            if ((keys[i] ^ entry) == key && (entry & DEPTH_MASK) == depth) {
+                return entry >>> DEPTH_BITS;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Stores the count for a position.
+     * @param key the Zobrist key of the position.
+     * @param depth the depth of the count.
+     * @param count the number of leaf nodes.
+     */
+    public void store(long key, int depth, long count) {
+        final long entry = (count << DEPTH_BITS) | depth;
+        int index = ((int) key & bucketMask) << 1;
+
+        // only a count at least as deep replaces the first entry
+        if ((data[index] & DEPTH_MASK) > depth) {
+            ++index;
+        }
+
+        keys[index] = key ^ entry;
+        data[index] = entry;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     */
+    public int size() {
+        return data.length;
+    }
+}
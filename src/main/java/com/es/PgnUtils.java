@@ -1,18 +1,13 @@
 package com.es;
 
 import java.util.Arrays;
-import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.es.pieces.Bishop;
-import com.es.pieces.King;
-import com.es.pieces.Knight;
-import com.es.pieces.Pawn;
+import com.es.pieces.AbstractPiece;
 import com.es.pieces.Piece.Color;
-import com.es.pieces.Queen;
-import com.es.pieces.Rook;
+import com.es.pieces.Pieces;
 
 public class PgnUtils {
 
@@ -28,7 +23,8 @@ public class PgnUtils {
         int[] ret = new int[2];
         int curChar = 0;
         int pieceType = move.charAt(curChar);
-        List<Integer> pieces;
+        final int[] pieces = new int[Board.MAX_PIECES];
+        int count;
 
         if(move.equalsIgnoreCase("O-O")) {
             return new int[] { -1, color.equals(Color.WHITE) ? 1 : 2 };
@@ -39,28 +35,28 @@ public class PgnUtils {
         // get a list of pieces of that type
         switch(pieceType) {
         case 'K':
-            pieces = board.getPiecsOfType(color, King.class);
+            count = board.getPiecesOfType(color, Bitboards.KING, pieces);
             curChar++;
             break;
         case 'Q':
-            pieces = board.getPiecsOfType(color, Queen.class);
+            count = board.getPiecesOfType(color, Bitboards.QUEEN, pieces);
             curChar++;
             break;
         case 'B':
-            pieces = board.getPiecsOfType(color, Bishop.class);
+            count = board.getPiecesOfType(color, Bitboards.BISHOP, pieces);
             curChar++;
             break;
         case 'N':
-            pieces = board.getPiecsOfType(color, Knight.class);
+            count = board.getPiecesOfType(color, Bitboards.KNIGHT, pieces);
             curChar++;
             break;
         case 'R':
-            pieces = board.getPiecsOfType(color, Rook.class);
+            count = board.getPiecesOfType(color, Bitboards.ROOK, pieces);
             curChar++;
             break;
         case 'P':
         default:
-            pieces = board.getPiecsOfType(color, Pawn.class);
+            count = board.getPiecesOfType(color, Bitboards.PAWN, pieces);
             pieceType = 'p';
         }
 
@@ -95,7 +91,8 @@ public class PgnUtils {
         boolean found = false;
 
         // go through the list and see if there is ONLY one possible piece move
-        for(Integer p:pieces) {
+        for(int i=0; i < count; ++i) {
+            final int p = pieces[i];
             int row = Board.squareToRow(p);
             int col = Board.squareToCol(p);
 
@@ -126,6 +123,164 @@ public class PgnUtils {
         return ret;
     }
 
+    /**
+     * Finds the legal move on the board for a move in standard algebraic notation, like Nbd7, exd8=Q+ or O-O.
+     * @param san the move, check and annotation marks are ignored.
+     * @return the move with its flags.
+     * @throws IllegalMoveException if no legal move, or more than one, matches.
+     */
+    public int parseMove(String san) throws IllegalMoveException {
+        int end = san.length();
+
+        // drop the check marks and annotations
+        while(end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+
+        final String move = san.substring(0, end).replace('0', 'O');
+        final int[] moves = new int[Board.MAX_MOVES];
+        final int count = board.generateAllMoves(moves);
+
+        if(move.equals("O-O") || move.equals("O-O-O")) {
+            final int flag = move.length() == 3 ? Board.FLAG_KING_CASTLE : Board.FLAG_QUEEN_CASTLE;
+
+            for(int i=0; i < count; ++i) {
+                if(Board.getFlags(moves[i]) == flag) {
+                    return moves[i];
+                }
+            }
+
+            throw new IllegalMoveException("Castling is not legal: " + san);
+        }
+
+        int first = 0;
+        int last = move.length();
+        int type = Bitboards.PAWN;
+        int promoteValue = 0;
+
+        if(last > 0 && "NBRQK".indexOf(move.charAt(0)) >= 0) {
+            type = "PNBRQK".indexOf(move.charAt(0));
+            first++;
+        }
+
+        // the promotion, with or without the =
+        if(type == Bitboards.PAWN && last > 2 && "NBRQ".indexOf(Character.toUpperCase(move.charAt(last - 1))) >= 0) {
+            promoteValue = AbstractPiece.pieceToPromoteValue(Character.toLowerCase(move.charAt(last - 1)));
+            last -= move.charAt(last - 2) == '=' ? 2 : 1;
+        }
+
+        if(last - first < 2) {
+            throw new IllegalMoveException("Not a move: " + san);
+        }
+
+        final int toSquare = Board.rowColToSquare(move.charAt(last - 1) - '1', move.charAt(last - 2) - 'a');
+        int fromRow = Board.MAX_ROW;
+        int fromCol = Board.MAX_COL;
+
+        // anything left between the piece and the destination narrows down the piece
+        for(int i=first; i < last - 2; ++i) {
+            final char c = move.charAt(i);
+
+            if(c >= 'a' && c <= 'h') {
+                fromCol = c - 'a';
+            } else if(c >= '1' && c <= '8') {
+                fromRow = c - '1';
+            }
+        }
+
+        int ret = Board.NULL_MOVE;
+
+        for(int i=0; i < count; ++i) {
+            final int from = Board.getFromSquare(moves[i]);
+
+            if(Board.getToSquare(moves[i]) != toSquare ||
+               Pieces.typeOf(board.getPieceCode(from)) != type ||
+               Board.getPromoteValue(moves[i]) != promoteValue ||
+               (fromRow != Board.MAX_ROW && fromRow != Board.squareToRow(from)) ||
+               (fromCol != Board.MAX_COL && fromCol != Board.squareToCol(from))) {
+                continue;
+            }
+
+            if(ret != Board.NULL_MOVE) {
+                LOG.error("Ambigious move: {}", san);
+                throw new IllegalMoveException("Ambigious move");
+            }
+
+            ret = moves[i];
+        }
+
+        if(ret == Board.NULL_MOVE) {
+            LOG.error("No legal move found for: {}", san);
+            throw new IllegalMoveException("Piece not found");
+        }
+
+        return ret;
+    }
+
+    /**
+     * Writes a legal move in standard algebraic notation, the reverse of {@link #parseMove(String)}.
+     * @param move the move, legal on the board.
+     * @return the move, like Nbd7, exd8=Q or O-O, without check marks.
+     */
+    public String toSan(int move) {
+        if(Board.getFlags(move) == Board.FLAG_KING_CASTLE) {
+            return "O-O";
+        } else if(Board.getFlags(move) == Board.FLAG_QUEEN_CASTLE) {
+            return "O-O-O";
+        }
+
+        final int fromSquare = Board.getFromSquare(move);
+        final int toSquare = Board.getToSquare(move);
+        final int type = Pieces.typeOf(board.getPieceCode(fromSquare));
+        final boolean capture = board.getPieceCode(toSquare) != Pieces.EMPTY || Board.isEnPassant(move);
+        final StringBuilder sb = new StringBuilder();
+
+        if(type == Bitboards.PAWN) {
+            if(capture) {
+                sb.append((char) ('a' + Board.squareToCol(fromSquare)));
+            }
+        } else {
+            final int[] moves = new int[Board.MAX_MOVES];
+            final int count = board.generateAllMoves(moves);
+            boolean ambiguous = false;
+            boolean sameRow = false;
+            boolean sameCol = false;
+
+            sb.append("PNBRQK".charAt(type));
+
+            // another piece of the same type moving to the same square needs the file, rank or both
+            for(int i=0; i < count; ++i) {
+                final int from = Board.getFromSquare(moves[i]);
+
+                if(from != fromSquare && Board.getToSquare(moves[i]) == toSquare && Pieces.typeOf(board.getPieceCode(from)) == type) {
+                    ambiguous = true;
+                    sameRow |= Board.squareToRow(from) == Board.squareToRow(fromSquare);
+                    sameCol |= Board.squareToCol(from) == Board.squareToCol(fromSquare);
+                }
+            }
+
+            if(ambiguous && (!sameCol || sameRow)) {
+                sb.append((char) ('a' + Board.squareToCol(fromSquare)));
+            }
+
+            if(ambiguous && sameCol) {
+                sb.append(Board.squareToRow(fromSquare) + 1);
+            }
+        }
+
+        if(capture) {
+            sb.append('x');
+        }
+
+        sb.append(Board.squareToString(toSquare));
+
+        if(Board.isPromotion(move)) {
+            sb.append('=').append("QBNR".charAt(Board.getPromoteValue(move) - 1));
+        }
+
+        return sb.toString();
+    }
+
     public String computePgnMove(int move) {
         final int fromSquare = Board.getFromSquare(move);
         final int toSquare = Board.getToSquare(move);
@@ -0,0 +1,69 @@
+package com.es;
+
+import java.util.Random;
+
+/**
+ * The random keys used to compute the Zobrist hash of a {@link Board}.
+ *
+ * A board's key is the XOR of the key for every piece on its square, each castling right that is
+ * still available, the file of the en passant square (if any) and {@link #BLACK_TO_MOVE} when it's
+ * black's turn. As XOR is its own inverse, making or unmaking a move just XORs the changed terms.
+ */
+public final class Zobrist {
+
+    /**
+     * Keys for a piece on a square: [color][type][index].
+     */
+    public static final long[][][] PIECES = new long[2][Bitboards.PIECE_TYPES][64];
+
+    public static final long WHITE_KING_CASTLE;
+    public static final long WHITE_QUEEN_CASTLE;
+    public static final long BLACK_KING_CASTLE;
+    public static final long BLACK_QUEEN_CASTLE;
+
+    /**
+     * The XOR of the castling keys for each mask of rights, see {@link Board#getCastlingMask()}.
+     */
+    public static final long[] CASTLING = new long[16];
+
+    /**
+     * Keys for the file of the en passant square.
+     */
+    public static final long[] EN_PASSANT = new long[8];
+
+    public static final long BLACK_TO_MOVE;
+
+    static {
+        // fixed seed so keys are the same from run to run
+        final Random random = new Random(0x5EEDL);
+
+        for(int color=0; color < 2; ++color) {
+            for(int type=0; type < Bitboards.PIECE_TYPES; ++type) {
+                for(int index=0; index < 64; ++index) {
+                    PIECES[color][type][index] = random.nextLong();
+                }
+            }
+        }
+
+        WHITE_KING_CASTLE = random.nextLong();
+        WHITE_QUEEN_CASTLE = random.nextLong();
+        BLACK_KING_CASTLE = random.nextLong();
+        BLACK_QUEEN_CASTLE = random.nextLong();
+
+        for(int mask=0; mask < CASTLING.length; ++mask) {
+            if((mask & Board.WHITE_KING_CASTLE) != 0) CASTLING[mask] ^= WHITE_KING_CASTLE;
+            if((mask & Board.WHITE_QUEEN_CASTLE) != 0) CASTLING[mask] ^= WHITE_QUEEN_CASTLE;
+            if((mask & Board.BLACK_KING_CASTLE) != 0) CASTLING[mask] ^= BLACK_KING_CASTLE;
+            if((mask & Board.BLACK_QUEEN_CASTLE) != 0) CASTLING[mask] ^= BLACK_QUEEN_CASTLE;
+        }
+
+        for(int file=0; file < 8; ++file) {
+            EN_PASSANT[file] = random.nextLong();
+        }
+
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+}
@@ -0,0 +1,70 @@
+package com.es.ai;
+
+import com.es.Board;
+
+/**
+ * Pre-allocated boards, one per ply of a search, for copy-make.
+ *
+ * Instead of making a move and undoing it on one shared board, the board for the next ply is
+ * copied from the current one and the move is made on the copy. Nothing has to be undone, and
+ * each search thread can own a stack without sharing any mutable state.
+ *
+ * Copy-make doesn't push onto a board's undo stack, which is only allocated if a move is made
+ * with {@link Board#makeMove(int, boolean)}, so a board holds just its position, about 4 KB with
+ * the piece lists and scratch buffers, and a copy-make copies about 1 KB of it.
+ */
+public final class BoardStack {
+
+    private final Board[] boards;
+
+    public BoardStack(Board root) {
+        this(root, MoveList.MAX_PLY);
+    }
+
+    public BoardStack(Board root, int maxPly) {
+        this.boards = new Board[maxPly + 1];
+
+        for(int i=0; i < boards.length; ++i) {
+            boards[i] = new Board();
+        }
+
+        boards[0].copyFrom(root);
+    }
+
+    /**
+     * Returns the board for a ply.
+     */
+    public Board get(int ply) {
+        return boards[ply];
+    }
+
+    /**
+     * Copies the board at a ply to the next ply and makes a move on it.
+     * @param ply the ply the move is made from.
+     * @param move a legal move for the board at that ply.
+     * @return the board for the next ply, with the move made.
+     */
+    public Board copyMake(int ply, int move) {
+        return copyMake(boards[ply], ply + 1, move);
+    }
+
+    /**
+     * Copies a board, which can be from another stack, to a ply and makes a move on it.
+     * @param from the board the move is made from, which isn't changed.
+     * @param ply the ply to copy the board to.
+     * @param move a legal move for the board copied from.
+     * @return the board for the ply, with the move made.
+     */
+    public Board copyMake(Board from, int ply, int move) {
+        final Board next = boards[ply];
+
+        next.copyFrom(from);
+        next.makeMoveWithoutUndo(move);
+
+        return next;
+    }
+
+    public int getMaxPly() {
+        return boards.length - 1;
+    }
+}
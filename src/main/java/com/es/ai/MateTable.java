@@ -0,0 +1,112 @@
+package com.es.ai;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size table of mate search results, keyed by the Zobrist key of the position.
+ *
+ * A position can be proven to be a mate within some number of the attacker's moves, or refuted:
+ * known not to be a mate within some number of moves. Both are bounds, a mate within N moves is
+ * also a mate within more and a refutation for N moves also holds for fewer, so an entry keeps the
+ * fewest moves it was proven in and the most it was refuted for. An entry is replaced by any other
+ * position that lands on its slot.
+ *
+ * The table isn't thread safe, each search thread needs its own.
+ */
+public final class MateTable {
+
+    public static final int UNKNOWN = 0;
+    public static final int PROVEN = 1;
+    public static final int REFUTED = 2;
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int MOVES_BITS = 8;
+    private static final long MOVES_MASK = (1L << MOVES_BITS) - 1;
+
+    private final long[] keys;
+    private final long[] data;  // (refuted << MOVES_BITS) | proven, 0 for neither
+    private final int mask;
+
+    /**
+     * @param megabytes the size of the table, rounded down to a power of 2 entries.
+     */
+    public MateTable(int megabytes) {
+        final int entries = Integer.highestOneBit((int) Math.min(Integer.MAX_VALUE, Math.max(1L, (long) megabytes * 1024 * 1024 / ENTRY_BYTES)));
+
+        this.keys = new long[entries];
+        this.data = new long[entries];
+        this.mask = entries - 1;
+    }
+
+    /**
+     * Looks up what's known about a position.
+     * @param key the key of the position.
+     * @param moves the number of the attacker's moves left.
+     * @return {@link #PROVEN} if it's a mate within the moves, {@link #REFUTED} if it isn't, or {@link #UNKNOWN}.
+     */
+    public int probe(long key, int moves) {
+        final int index = (int) key & mask;
+
+        if (keys[index] != key) {
+            return UNKNOWN;
+        }
+
+        final long proven = data[index] & MOVES_MASK;
+        final long refuted = data[index] >>> MOVES_BITS;
+
+        if (proven != 0 && proven <= moves) {
+            return PROVEN;
+        }
+
+        return refuted >= moves ? REFUTED : UNKNOWN;
+    }
+
+    /**
+     * Records that a position is a mate within a number of the attacker's moves.
+     */
+    public void storeProven(long key, int moves) {
+        final int index = entry(key);
+        final long proven = data[index] & MOVES_MASK;
+
+        if (proven == 0 || moves < proven) {
+            data[index] = (data[index] & ~MOVES_MASK) | moves;
+        }
+    }
+
+    /**
+     * Records that a position isn't a mate within a number of the attacker's moves.
+     */
+    public void storeRefuted(long key, int moves) {
+        final int index = entry(key);
+
+        if (moves > data[index] >>> MOVES_BITS) {
+            data[index] = ((long) moves << MOVES_BITS) | (data[index] & MOVES_MASK);
+        }
+    }
+
+    /**
+     * Returns the index of the entry for a key, emptying the slot if another position has it.
+     */
+    private int entry(long key) {
+        final int index = (int) key & mask;
+
+        if (keys[index] != key) {
+            keys[index] = key;
+            data[index] = 0L;
+        }
+
+        return index;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+    }
+
+    /**
+     * Returns the number of entries in the table.
+     */
+    public int size() {
+        return data.length;
+    }
+}
@@ -0,0 +1,57 @@
+package com.es.ai;
+
+import com.es.Board;
+
+/**
+ * Pre-allocated move buffers, one per ply of a search.
+ *
+ * Each ply gets its own buffer so generating the moves deeper in the tree doesn't overwrite the
+ * moves still being looped over closer to the root, and no arrays are allocated during the search.
+ */
+public final class MoveList {
+
+    public static final int MAX_PLY = 64;
+
+    private final int[][] moves;
+    private final int[] counts;
+
+    public MoveList() {
+        this(MAX_PLY);
+    }
+
+    public MoveList(int maxPly) {
+        this.moves = new int[maxPly][Board.MAX_MOVES];
+        this.counts = new int[maxPly];
+    }
+
+    /**
+     * Generates all of the moves for the board into the buffer for a ply.
+     * @param board the board to generate the moves for.
+     * @param ply the ply (distance from the root) the moves are for.
+     * @return the number of moves generated.
+     */
+    public int generate(Board board, int ply) {
+        counts[ply] = board.generateAllMoves(moves[ply]);
+
+        return counts[ply];
+    }
+
+    /**
+     * Returns the buffer for a ply; only the first {@link #getCount(int)} moves are valid.
+     */
+    public int[] getMoves(int ply) {
+        return moves[ply];
+    }
+
+    public int getCount(int ply) {
+        return counts[ply];
+    }
+
+    public int getMove(int ply, int index) {
+        return moves[ply][index];
+    }
+
+    public int getMaxPly() {
+        return counts.length;
+    }
+}
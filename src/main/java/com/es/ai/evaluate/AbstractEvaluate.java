@@ -14,6 +14,25 @@ public abstract class AbstractEvaluate {
         this.colorPlaying = colorPlaying;
     }
 
+    /**
+     * Creates an evaluation by name, for choosing one from the configuration.
+     * @param name PieceOnly, PositionOnly or Simple; case is ignored.
+     * @param colorPlaying the color being played.
+     * @return the evaluation.
+     * @throws IllegalArgumentException if there isn't an evaluation with the name.
+     */
+    public static AbstractEvaluate create(String name, Color colorPlaying) {
+        if("PieceOnly".equalsIgnoreCase(name)) {
+            return new PieceOnlyEvaluate(colorPlaying);
+        } else if("PositionOnly".equalsIgnoreCase(name)) {
+            return new PositionOnlyEvaluate(colorPlaying);
+        } else if("Simple".equalsIgnoreCase(name)) {
+            return new SimpleEvaluate(colorPlaying);
+        }
+
+        throw new IllegalArgumentException("Unknown evaluation: " + name);
+    }
+
     /**
      * The evaluation function where higher scores mean a better board for the color played.
      * @param board the board to evaluate.
@@ -15,28 +15,7 @@ public class PieceOnlyEvaluate extends AbstractEvaluate {
 
     @Override
     public int evaluate(Board board) {
-        final int[] whitePieces = board.getPieces(Color.WHITE);
-        final int[] blackPieces = board.getPieces(Color.BLACK);
-        int whiteScore = 0;
-        int blackScore = 0;
-
-        //
-        // Compute the value based upon position
-        //
-        for(int p:whitePieces) {
-            if(p == Board.MAX_SQUARE) {
-                break;
-            }
-            whiteScore += board.getPiece(p).getValue();
-        }
-
-        for(int p:blackPieces) {
-            if(p == Board.MAX_SQUARE) {
-                break;
-            }
-            blackScore += board.getPiece(p).getValue();
-        }
-
-        return colorPlaying.equals(Color.WHITE) ? whiteScore - blackScore : blackScore - whiteScore;
+        // the board keeps the material up to date as moves are made
+        return board.getMaterialScore(colorPlaying);
     }
 }
\ No newline at end of file
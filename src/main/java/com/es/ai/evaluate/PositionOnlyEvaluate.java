@@ -15,27 +15,10 @@ public class PositionOnlyEvaluate extends AbstractEvaluate {
 
     @Override
     public int evaluate(Board board) {
-        final int[] whitePieces = board.getPieces(Color.WHITE);
-        final int[] blackPieces = board.getPieces(Color.BLACK);
-        int whiteScore = 0;
-        int blackScore = 0;
-
         //
-        // Compute the value based upon position
+        // The value based upon position is kept up to date by the board as moves are made
         //
-        for(int p:whitePieces) {
-            if(p == Board.MAX_SQUARE) {
-                break;
-            }
-            whiteScore += board.getPiece(p).getPositionValue(p);
-        }
-
-        for(int p:blackPieces) {
-            if(p == Board.MAX_SQUARE) {
-                break;
-            }
-            blackScore += board.getPiece(p).getPositionValue(p);
-        }
+        final int score = board.getPositionScore(colorPlaying);
 
 /*
         if(LOG.isDebugEnabled()) {
@@ -44,6 +27,6 @@ public class PositionOnlyEvaluate extends AbstractEvaluate {
         }
 */
 
-        return colorPlaying.equals(Color.WHITE) ? whiteScore - blackScore : blackScore - whiteScore;
+        return score;
     }
 }
\ No newline at end of file
@@ -16,33 +16,17 @@ public class SimpleEvaluate extends AbstractEvaluate {
 
     @Override
     public int evaluate(Board board) {
-        final int[] whitePieces = board.getPieces(Color.WHITE);
-        final int[] blackPieces = board.getPieces(Color.BLACK);
-        int whiteScore = 0;
-        int blackScore = 0;
-
         //
-        // Compute the value based upon position
+        // The value based upon position is kept up to date by the board as moves are made
         //
-        for(int p:whitePieces) {
-            if(p == Board.MAX_SQUARE) {
-                break;
-            }
-            whiteScore += board.getPiece(p).getPositionValue(p);
-        }
-
-        for(int p:blackPieces) {
-            if(p == Board.MAX_SQUARE) {
-                break;
-            }
-            blackScore += board.getPiece(p).getPositionValue(p);
-        }
+        int whiteScore = board.getPositionScore(Color.WHITE);
+        int blackScore = 0;
 
         //
         // Add in bonus for each piece attacking and defending
         //
-        //whiteScore += computeAttackDefendBonus(board, whitePieces, Color.BLACK);
-        //blackScore += computeAttackDefendBonus(board, blackPieces, Color.WHITE);
+        //whiteScore += computeAttackDefendBonus(board, board.getPieces(Color.WHITE), Color.BLACK);
+        //blackScore += computeAttackDefendBonus(board, board.getPieces(Color.BLACK), Color.WHITE);
 
 /*
         if(LOG.isDebugEnabled()) {
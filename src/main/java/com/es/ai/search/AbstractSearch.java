@@ -4,6 +4,7 @@ import org.apache.commons.configuration.Configuration;
 
 import com.es.Board;
 import com.es.IllegalMoveException;
+import com.es.ai.MoveList;
 import com.es.ai.MoveNode;
 import com.es.ai.evaluate.AbstractEvaluate;
 import com.es.pieces.Piece.Color;
@@ -14,10 +15,17 @@ import com.es.pieces.Piece.Color;
  */
 public abstract class AbstractSearch {
 
+    /**
+     * The score for being checkmated at the root; mates further from the root score a little less.
+     */
+    public static final int MATE_SCORE = 10000000;
+
     protected final Color colorPlaying;
     protected final Board board;
     protected final Configuration configuration;
     protected final AbstractEvaluate eval;
+    protected final MoveList moveList = new MoveList();
+    protected int bestMove = Board.NULL_MOVE;
 
     public AbstractSearch(Color colorPlaying, Board board, Configuration configuration, AbstractEvaluate eval) {
         this.colorPlaying = colorPlaying;
@@ -26,10 +34,65 @@ public abstract class AbstractSearch {
         this.eval = eval;
     }
 
+    /**
+     * Creates a search by name, for choosing one from the configuration.
+     * @param name MiniMax, NegaMax or NegaScout; case is ignored.
+     * @param colorPlaying the color the search plays.
+     * @param board the board to search.
+     * @param configuration the configuration, which has the depth to search to.
+     * @param eval the evaluation for the leaves.
+     * @return the search.
+     * @throws IllegalArgumentException if there isn't a search with the name.
+     */
+    public static AbstractSearch create(String name, Color colorPlaying, Board board, Configuration configuration, AbstractEvaluate eval) {
+        if("MiniMax".equalsIgnoreCase(name)) {
+            return new MiniMaxSearch(colorPlaying, board, configuration, eval);
+        } else if("NegaMax".equalsIgnoreCase(name)) {
+            return new NegaMaxSearch(colorPlaying, board, configuration, eval);
+        } else if("NegaScout".equalsIgnoreCase(name)) {
+            return new NegaScoutSearch(colorPlaying, board, configuration, eval);
+        }
+
+        throw new IllegalArgumentException("Unknown search: " + name);
+    }
+
     /**
      * Computes the next move for the color the search is playing.
      * @param rootNode the root node of any existing tree.
      * @return the next move to make.
      */
     public abstract MoveNode computeNextMove(MoveNode rootNode) throws IllegalMoveException;
+
+    /**
+     * Returns the best move found at the root by the last call to {@link #computeNextMove(MoveNode)}.
+     * @return the move, or {@link Board#NULL_MOVE} if the side to move had no moves.
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * Adds a child to a node for each of the moves on the board.
+     * @param node the node to add the children to.
+     * @param ply the ply of the node, selects the move buffer to use.
+     * @param currentPlayer the color making the moves.
+     */
+    protected void addChildren(MoveNode node, int ply, Color currentPlayer) {
+        final int count = moveList.generate(board, ply);
+        final int[] moves = moveList.getMoves(ply);
+
+        for(int i=0; i < count; ++i) {
+            node.addChild(currentPlayer, moves[i]);
+        }
+    }
+
+    /**
+     * Scores a position where the side to move has no legal moves: checkmate or stalemate.
+     * @param currentPlayer the color to move.
+     * @param ply the ply of the position, so the nearest mate is preferred.
+     * @return the score from the point of view of the color to move.
+     */
+    protected int scoreNoMoves(Color currentPlayer, int ply) {
+        return board.isInCheck(currentPlayer) ? -(MATE_SCORE - ply) : 0;
+    }
 }
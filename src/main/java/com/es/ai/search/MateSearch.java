@@ -0,0 +1,291 @@
+package com.es.ai.search;
+
+import java.util.Arrays;
+
+import com.es.Board;
+import com.es.IllegalMoveException;
+import com.es.ai.MateTable;
+import com.es.ai.MoveList;
+import com.es.pieces.Piece.Color;
+
+/**
+ * Proves mates in N, for mate puzzles, instead of scoring positions like the other searches.
+ *
+ * The attacker needs one move that mates within its remaining moves, and every defence has to
+ * lose to it. The search deepens one attacker move at a time, so the first mate found is the
+ * shortest, and stops trying moves at a node as soon as it's decided. On the attacker's last
+ * move only checks can mate, so only checks are tried; checks only turns that on for all of the
+ * attacker's moves, which is much faster but misses mates that start with a quiet move. The
+ * attacker's checks and the defender's captures are tried first, after the move that last
+ * decided a node at the same ply.
+ *
+ * What's proven or refuted is kept in a {@link MateTable} with the number of the attacker's moves
+ * it holds for, so a position reached again, or in the next iteration, isn't searched again.
+ */
+public final class MateSearch {
+
+    // the most attacker moves, so the plies fit in the move list
+    public static final int MAX_MOVES = (MoveList.MAX_PLY - 1) / 2;
+
+    // the same position is a different problem with the other side attacking
+    private static final long BLACK_ATTACKS = 0x9e3779b97f4a7c15L;
+
+    private static final int NODES_PER_TIME_CHECK = 4096;
+
+    private final Board board;
+    private final MateTable table;
+    private final boolean checksOnly;
+    private final MoveList moveList = new MoveList();
+    private final int[] killers = new int[MoveList.MAX_PLY];   // [ply] the move that last decided a node
+
+    private long attackerKey;
+    private long deadline;
+    private boolean aborted;
+    private long nodes;
+    private int bestMove;
+
+    /**
+     * @param board the board to search, which is left as it was.
+     * @param table the table of results, which can be kept from one search to the next.
+     * @param checksOnly true to only try checks on all of the attacker's moves.
+     */
+    public MateSearch(Board board, MateTable table, boolean checksOnly) {
+        this.board = board;
+        this.table = table;
+        this.checksOnly = checksOnly;
+    }
+
+    /**
+     * Looks for the shortest mate by the side to move.
+     * @param maxMoves the most moves to look for a mate in, up to {@link #MAX_MOVES}.
+     * @param time the most time to spend, in nanoseconds, or 0 for no limit.
+     * @return the number of moves in the mate, or 0 if there isn't one within the moves or time.
+     */
+    public int findMate(int maxMoves, long time) throws IllegalMoveException {
+        start(time, board.getActiveColor());
+
+        for (int moves = 1; moves <= Math.min(maxMoves, MAX_MOVES) && !aborted; ++moves) {
+            if (attack(moves, 0)) {
+                return moves;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Looks for the shortest mate of the side to move, whatever it plays.
+     * @param maxMoves the most of the opponent's moves to look for a mate in, up to {@link #MAX_MOVES}.
+     * @param time the most time to spend, in nanoseconds, or 0 for no limit.
+     * @return the number of the opponent's moves in the mate, or 0 if there isn't one within the moves or time.
+     */
+    public int findMated(int maxMoves, long time) throws IllegalMoveException {
+        start(time, board.getActiveColor().inverse());
+
+        for (int moves = 1; moves <= Math.min(maxMoves, MAX_MOVES) && !aborted; ++moves) {
+            if (defend(moves, 0)) {
+                return moves;
+            }
+        }
+
+        return 0;
+    }
+
+    private void start(long time, Color attacker) {
+        attackerKey = attacker.equals(Color.BLACK) ? BLACK_ATTACKS : 0L;
+        deadline = time > 0 ? System.nanoTime() + time : 0L;
+        aborted = false;
+        nodes = 0;
+        bestMove = Board.NULL_MOVE;
+        Arrays.fill(killers, Board.NULL_MOVE);
+    }
+
+    /**
+     * Searches a position with the attacker to move.
+     * @param moves the number of the attacker's moves left, at least 1.
+     * @return true if every defence is mated within the moves.
+     */
+    private boolean attack(int moves, int ply) throws IllegalMoveException {
+        if (visit()) {
+            return false;
+        }
+
+        final long key = board.getZobristKey() ^ attackerKey;
+        final int known = ply == 0 ? MateTable.UNKNOWN : table.probe(key, moves);   // the root needs its move
+
+        if (known != MateTable.UNKNOWN) {
+            return known == MateTable.PROVEN;
+        }
+
+        final int count = orderKiller(ply, orderChecks(ply, moveList.generate(board, ply), moves == 1 || checksOnly));
+        final int[] list = moveList.getMoves(ply);
+
+        for (int i = 0; i < count; ++i) {
+            board.makeMove(list[i], false);
+
+            final boolean mate = defend(moves - 1, ply + 1);
+
+            board.undoMove();
+
+            if (mate) {
+                table.storeProven(key, moves);
+                killers[ply] = list[i];
+
+                if (ply == 0) {
+                    bestMove = list[i];
+                }
+
+                return true;
+            }
+
+            if (aborted) {
+                return false;
+            }
+        }
+
+        table.storeRefuted(key, moves);
+        return false;
+    }
+
+    /**
+     * Searches a position with the defender to move.
+     * @param moves the number of the attacker's moves left.
+     * @return true if the defender is mated within the moves whatever it plays.
+     */
+    private boolean defend(int moves, int ply) throws IllegalMoveException {
+        if (visit()) {
+            return false;
+        }
+
+        // a mate needs a check, so only those positions need their moves looked at
+        if (moves == 0) {
+            return board.getCheckers() != 0 && !board.hasLegalMove();
+        }
+
+        final long key = board.getZobristKey() ^ attackerKey;
+        final int known = table.probe(key, moves);
+
+        if (known != MateTable.UNKNOWN) {
+            return known == MateTable.PROVEN;
+        }
+
+        final int count = orderKiller(ply, orderCaptures(ply, moveList.generate(board, ply)));
+
+        if (count == 0) {
+            return board.getCheckers() != 0;
+        }
+
+        final int[] list = moveList.getMoves(ply);
+
+        for (int i = 0; i < count; ++i) {
+            board.makeMove(list[i], false);
+
+            final boolean mate = attack(moves, ply + 1);
+
+            board.undoMove();
+
+            if (!mate) {
+                if (!aborted) {
+                    table.storeRefuted(key, moves);
+                    killers[ply] = list[i];
+                }
+
+                return false;
+            }
+        }
+
+        table.storeProven(key, moves);
+        return true;
+    }
+
+    /**
+     * Moves the checks to the front of a ply's moves, as they're the likeliest to mate.
+     * @param onlyChecks true to drop the moves that aren't checks.
+     * @return the number of moves to try.
+     */
+    private int orderChecks(int ply, int count, boolean onlyChecks) {
+        final int[] list = moveList.getMoves(ply);
+        int checks = 0;
+
+        for (int i = 0; i < count; ++i) {
+            if (board.givesCheck(list[i])) {
+                final int move = list[i];
+
+                list[i] = list[checks];
+                list[checks++] = move;
+            }
+        }
+
+        return onlyChecks ? checks : count;
+    }
+
+    /**
+     * Moves the captures to the front of a ply's moves, as they're the likeliest defences.
+     * @return the number of moves, unchanged.
+     */
+    private int orderCaptures(int ply, int count) {
+        final int[] list = moveList.getMoves(ply);
+        int captures = 0;
+
+        for (int i = 0; i < count; ++i) {
+            if (Board.isCapture(list[i])) {
+                final int move = list[i];
+
+                list[i] = list[captures];
+                list[captures++] = move;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Moves the killer for a ply to the front of its moves, as the move that decided a sibling
+     * often decides this node too.
+     * @return the number of moves, unchanged.
+     */
+    private int orderKiller(int ply, int count) {
+        final int[] list = moveList.getMoves(ply);
+
+        for (int i = 0; i < count; ++i) {
+            if (list[i] == killers[ply]) {
+                list[i] = list[0];
+                list[0] = killers[ply];
+                break;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Counts a node and checks the time now and then.
+     * @return true if the search has run out of time.
+     */
+    private boolean visit() {
+        if (++nodes % NODES_PER_TIME_CHECK == 0 && deadline != 0 && System.nanoTime() > deadline) {
+            aborted = true;
+        }
+
+        return aborted;
+    }
+
+    /**
+     * Returns the attacker's first move in the mate found by {@link #findMate(int, long)}.
+     * @return the move, or {@link Board#NULL_MOVE} if no mate was found.
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * Returns true if the last search ran out of time before it could finish.
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+}
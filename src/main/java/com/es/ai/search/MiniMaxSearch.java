@@ -6,7 +6,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.es.Board;
-import com.es.Board.State;
 import com.es.CmdConfiguration;
 import com.es.IllegalMoveException;
 import com.es.ai.MoveNode;
@@ -25,46 +24,48 @@ public class MiniMaxSearch extends AbstractSearch {
 
     @Override
     public MoveNode computeNextMove(MoveNode rootNode) throws IllegalMoveException {
-        minimax(rootNode, configuration.getInt(CmdConfiguration.DEPTH), colorPlaying);
+        bestMove = Board.NULL_MOVE;
+
+        minimax(rootNode, configuration.getInt(CmdConfiguration.DEPTH), 0, colorPlaying);
 
         return rootNode;
     }
 
-    private int minimax(MoveNode node, int depth, Color currentPlayer) throws IllegalMoveException {
+    private int minimax(MoveNode node, int depth, int ply, Color currentPlayer) throws IllegalMoveException {
         if(depth == 0) { // when we reach our depth, evaluate the board
-            final int score = eval.evaluate(board);
+            final int score = board.hasLegalMove() ? eval.evaluate(board) : scoreNoMoves(currentPlayer, ply) * (currentPlayer.equals(colorPlaying) ? 1 : -1);
             node.setScore(score);
             return score;
         }
             
         int bestValue = currentPlayer.equals(colorPlaying) ? Integer.MIN_VALUE : Integer.MAX_VALUE;
 
-        // generate all the moves for the current board
-        final int[] moves = board.generateAllMoves();
-
-        // add children for each move
-        for(int move:moves) {
-            if(move == Board.NULL_MOVE)
-                break;
+        // generate all the moves for the current board, adding children for each move
+        addChildren(node, ply, currentPlayer);
 
-            node.addChild(currentPlayer, move);
+        if(node.getChildCount() == 0) { // checkmate or stalemate
+            bestValue = scoreNoMoves(currentPlayer, ply) * (currentPlayer.equals(colorPlaying) ? 1 : -1);
         }
 
         // go through the children computing scores
         for(MoveNode child:node.getChildren()) {
-            final State state = board.makeMove(child.getMove()); // make this move
+            board.makeMove(child.getMove()); // make this move
 
             // make the recursive minimax call
-            final int value = minimax(child, depth-1, currentPlayer.inverse());
+            final int value = minimax(child, depth-1, ply+1, currentPlayer.inverse());
+
+            // update the best value, and the best move at the root
+            if(ply == 0 && value > bestValue) {
+                bestMove = child.getMove();
+            }
 
-            // update the best value
             if(currentPlayer.equals(colorPlaying)) {
                 bestValue = FastMath.max(bestValue, value);
             } else {
                 bestValue = FastMath.min(bestValue, value);
             }
 
-            board.unmakeMove(child.getMove(), state); // unmake the move
+            board.undoMove(); // unmake the move
         }
 
         // set the score for the node
@@ -6,7 +6,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.es.Board;
-import com.es.Board.State;
 import com.es.CmdConfiguration;
 import com.es.IllegalMoveException;
 import com.es.ai.MoveNode;
@@ -26,14 +25,16 @@ public class NegaMaxSearch extends AbstractSearch {
 
     @Override
     public MoveNode computeNextMove(MoveNode rootNode) throws IllegalMoveException {
-        int ret = negamax(rootNode, configuration.getInt(CmdConfiguration.DEPTH), colorPlaying);
+        bestMove = Board.NULL_MOVE;
+
+        int ret = negamax(rootNode, configuration.getInt(CmdConfiguration.DEPTH), 0, colorPlaying);
 
         LOG.debug("RET: {}", ret);
 
         return rootNode;
     }
 
-    private int negamax(MoveNode node, int depth, Color currentPlayer) throws IllegalMoveException {
+    private int negamax(MoveNode node, int depth, int ply, Color currentPlayer) throws IllegalMoveException {
 /*        final MoveNode tableNode = transTable.get(board);
 
         // check to see if the node is in the transTable
@@ -49,38 +50,38 @@ public class NegaMaxSearch extends AbstractSearch {
         }
 */
         if(depth == 0) { // when we reach our depth, evaluate the board
-            final int score = eval.evaluate(board) * (currentPlayer.equals(colorPlaying) ? 1 : -1);
+            final int score = board.hasLegalMove() ? eval.evaluate(board) * (currentPlayer.equals(colorPlaying) ? 1 : -1) : scoreNoMoves(currentPlayer, ply);
             node.setScore(score);
             return score;
         }
 
         int bestValue = Integer.MIN_VALUE;
 
-        // generate all the moves for the current board
-        final int[] moves = board.generateAllMoves();
-
-        // add children for each move
-        for(int move:moves) {
-            if(move == Board.NULL_MOVE)
-                break;
+        // generate all the moves for the current board, adding children for each move
+        addChildren(node, ply, currentPlayer);
 
-            node.addChild(currentPlayer, move);
+        if(node.getChildCount() == 0) { // checkmate or stalemate
+            bestValue = scoreNoMoves(currentPlayer, ply);
         }
 
         // go through the children computing scores
         for(MoveNode child:node.getChildren()) {
-            final State state = board.makeMove(child.getMove()); // make this move
+            board.makeMove(child.getMove()); // make this move
 
             // add the node to the table
             //transTable.put(board, child);
 
             // make the recursive negamax call
-            final int value = -negamax(child, depth-1, currentPlayer.inverse());
+            final int value = -negamax(child, depth-1, ply+1, currentPlayer.inverse());
+
+            // update the best value, and the best move at the root
+            if(ply == 0 && value > bestValue) {
+                bestMove = child.getMove();
+            }
 
-            // update the best value
             bestValue = FastMath.max(bestValue, value);
 
-            board.unmakeMove(child.getMove(), state); // unmake the move
+            board.undoMove(); // unmake the move
         }
 
         // set the score for the node
@@ -6,7 +6,6 @@ import org.apache.commons.math3.util.FastMath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.es.Board;
-import com.es.Board.State;
 import com.es.CmdConfiguration;
 import com.es.IllegalMoveException;
 import com.es.ai.MoveNode;
@@ -24,14 +23,22 @@ public class NegaScoutSearch extends AbstractSearch {
 
     @Override
     public MoveNode computeNextMove(MoveNode rootNode) throws IllegalMoveException {
-        int ret = negamax(rootNode, configuration.getInt(CmdConfiguration.DEPTH), Integer.MIN_VALUE, Integer.MAX_VALUE, colorPlaying);
+        bestMove = Board.NULL_MOVE;
+
+        int ret = negamax(rootNode, configuration.getInt(CmdConfiguration.DEPTH), 0, Integer.MIN_VALUE, Integer.MAX_VALUE, colorPlaying);
 
         LOG.debug("RET: {}", ret);
         
         return rootNode;
     }
 
-    private int negamax(MoveNode node, int depth, int alpha, int beta, Color currentPlayer) throws IllegalMoveException {
+    private int negamax(MoveNode node, int depth, int ply, int alpha, int beta, Color currentPlayer) throws IllegalMoveException {
+        if(depth == 0 && !board.hasLegalMove()) { // checkmate or stalemate
+            final int score = scoreNoMoves(currentPlayer, ply);
+            node.setScore(score);
+            return score;
+        }
+
         if(depth == 0) { // when we reach our depth, evaluate the board
             final int score = -eval.evaluate(board);
             node.setScore(score);
@@ -39,16 +46,14 @@ public class NegaScoutSearch extends AbstractSearch {
         }
 
         if(node.getChildCount() == 0) {
-            // generate all the moves for the current board
-            final int[] moves = board.generateAllMoves();
-    
-            // add children for each move
-            for(int move:moves) {
-                if(move == Board.NULL_MOVE)
-                    break;
-    
-                node.addChild(currentPlayer, move);
-            }
+            // generate all the moves for the current board, adding children for each move
+            addChildren(node, ply, currentPlayer);
+        }
+
+        if(node.getChildCount() == 0) { // checkmate or stalemate
+            final int score = scoreNoMoves(currentPlayer, ply);
+            node.setScore(score);
+            return score;
         }
         
         final List<MoveNode> children = node.getChildren();
@@ -56,17 +61,22 @@ public class NegaScoutSearch extends AbstractSearch {
         // go through the children computing scores
         for(int i=0; i < node.getChildCount(); ++i) {
             final MoveNode child = children.get(i);
-            final State state = board.makeMove(child.getMove()); // make this move
+            board.makeMove(child.getMove()); // make this move
             
-            int value = -negamax(child, depth-1, -beta, -alpha, currentPlayer.inverse());
+            final int previousAlpha = alpha;
+            int value = -negamax(child, depth-1, ply+1, -beta, -alpha, currentPlayer.inverse());
 
             if(i != 0 && alpha < value && value < beta) {
-                alpha = -negamax(child, depth-1, -beta, -value, currentPlayer.inverse());
+                alpha = -negamax(child, depth-1, ply+1, -beta, -value, currentPlayer.inverse());
             }
             
-            board.unmakeMove(child.getMove(), state); // unmake the move
+            board.undoMove(); // unmake the move
             
             alpha = FastMath.max(alpha, value); // update the best value
+
+            if(ply == 0 && (bestMove == Board.NULL_MOVE || alpha > previousAlpha)) {
+                bestMove = child.getMove();
+            }
             
             if(alpha >= beta) {
                 break;
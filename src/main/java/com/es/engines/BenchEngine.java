@@ -0,0 +1,148 @@
+package com.es.engines;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.es.Board;
+import com.es.CmdConfiguration;
+import com.es.IllegalMoveException;
+import com.es.ai.MoveNode;
+import com.es.ai.evaluate.AbstractEvaluate;
+import com.es.ai.search.AbstractSearch;
+
+/**
+ * Searches a fixed list of positions to the configured depth and reports the nodes, time and speed.
+ *
+ * The searches don't depend on time or threads, so the total number of nodes is the same on every
+ * run and machine for the same search, evaluation and depth: it's a signature that only changes
+ * when the search or move generation does. The result can be saved to a baseline file, and a later
+ * run compared against it; the program exits with an error if the signature doesn't match.
+ */
+public class BenchEngine implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BenchEngine.class);
+
+    // openings, middlegames from the tactics suites and endgames, so every phase is timed
+    private static final String[] POSITIONS = {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "r1b2rk1/2q1b1pp/p2ppn2/1p6/3QP3/1BN1B3/PPP3PP/R4RK1 w - - 0 1",
+        "6k1/p1qb1p1p/1p3np1/2b2p2/2B5/2P3N1/PP2QPPP/4N1K1 b - - 0 1",
+        "r1b2r1k/pp2q1pp/2p2p2/2p1n2N/4P3/1PNP2QP/1PP2RP1/5RK1 w - - 0 1",
+        "4r1k1/p1pb1ppp/Qbp1r3/8/1P6/2Pq1B2/R2P1PPP/2B2RK1 b - - 0 1",
+        "5rk1/ppp1qn1p/3pB1pr/3Pp3/2P1Pn2/PPB5/1Q4RP/5RK1 w - - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "8/p7/4k1P1/1p1p3P/1P2pK2/2P5/P7/8 w - - 0 1",
+        "8/8/4K3/8/k7/8/8/1R6 w - - 0 1"
+    };
+
+    private static final String NODES = "nodes";
+    private static final String NPS = "nps";
+
+    private final Configuration config;
+
+    public BenchEngine(Configuration config) {
+        this.config = config;
+    }
+
+    @Override
+    public void run() {
+        final int depth = config.getInt(CmdConfiguration.DEPTH);
+        final String search = config.getString(CmdConfiguration.SEARCH);
+        final String evaluate = config.getString(CmdConfiguration.EVALUATE);
+        long totalNodes = 0;
+        long totalTime = 0;
+
+        System.out.println("BENCH: " + search + " search, " + evaluate + " evaluation, depth " + depth);
+
+        try {
+            for(String fen:POSITIONS) {
+                final Board board = Board.fromFEN(fen);
+                final AbstractEvaluate eval = AbstractEvaluate.create(evaluate, board.getActiveColor());
+                final AbstractSearch ai = AbstractSearch.create(search, board.getActiveColor(), board, config, eval);
+                final MoveNode rootNode = new MoveNode();
+                final long start = System.nanoTime();
+
+                ai.computeNextMove(rootNode);
+
+                final long elapsed = System.nanoTime() - start;
+                final long nodes = rootNode.getNodeCount();
+
+                totalNodes += nodes;
+                totalTime += elapsed;
+
+                System.out.println(String.format("%s: %,d nodes in %,d ms, %,d nps", fen, nodes, elapsed / 1000000, EngineUtils.nodesPerSecond(nodes, elapsed)));
+            }
+        } catch(IllegalMoveException e) {
+            LOG.error("Illegal move: {}", e.getMessage(), e);
+            System.err.println("Illegal move: " + e.getMessage());
+            return;
+        }
+
+        final long nps = EngineUtils.nodesPerSecond(totalNodes, totalTime);
+
+        System.out.println(String.format("TOTAL: %,d nodes in %,d ms, %,d nps", totalNodes, totalTime / 1000000, nps));
+
+        try {
+            final String saveFile = config.getString(CmdConfiguration.SAVE_BASELINE);
+
+            if(saveFile != null) {
+                saveBaseline(saveFile, depth, search, evaluate, totalNodes, nps);
+            }
+
+            final String baselineFile = config.getString(CmdConfiguration.BASELINE);
+
+            if(baselineFile != null && !compareBaseline(baselineFile, depth, search, evaluate, totalNodes, nps)) {
+                LOG.error("The bench signature {} doesn't match the baseline in {}", totalNodes, baselineFile);
+                System.exit(1);
+            }
+        } catch(ConfigurationException e) {
+            LOG.error("Error with the baseline file: {}", e.getMessage(), e);
+            System.err.println("Error with the baseline file: " + e.getMessage());
+        }
+    }
+
+    private static void saveBaseline(String file, int depth, String search, String evaluate, long nodes, long nps) throws ConfigurationException {
+        final PropertiesConfiguration baseline = new PropertiesConfiguration();
+
+        baseline.setProperty(CmdConfiguration.DEPTH, depth);
+        baseline.setProperty(CmdConfiguration.SEARCH, search);
+        baseline.setProperty(CmdConfiguration.EVALUATE, evaluate);
+        baseline.setProperty(NODES, nodes);
+        baseline.setProperty(NPS, nps);
+        baseline.save(file);
+
+        System.out.println("Saved the baseline in " + file);
+    }
+
+    /**
+     * Prints how a run compares to a saved baseline.
+     * @return false if the node counts don't match, or the baseline was made with other settings.
+     */
+    private static boolean compareBaseline(String file, int depth, String search, String evaluate, long nodes, long nps) throws ConfigurationException {
+        final PropertiesConfiguration baseline = new PropertiesConfiguration(file);
+
+        // the node counts only match for the same settings
+        if(baseline.getInt(CmdConfiguration.DEPTH) != depth ||
+           !baseline.getString(CmdConfiguration.SEARCH).equalsIgnoreCase(search) ||
+           !baseline.getString(CmdConfiguration.EVALUATE).equalsIgnoreCase(evaluate)) {
+            System.out.println("BASELINE: made with " + baseline.getString(CmdConfiguration.SEARCH) + " search, " +
+                               baseline.getString(CmdConfiguration.EVALUATE) + " evaluation, depth " + baseline.getInt(CmdConfiguration.DEPTH) + "; can't compare");
+            return false;
+        }
+
+        final long baselineNodes = baseline.getLong(NODES);
+        final long baselineNps = baseline.getLong(NPS);
+
+        System.out.println(String.format("BASELINE: %,d nodes, %,d nps; signature %s, speed %+.1f%%",
+                                         baselineNodes, baselineNps, baselineNodes == nodes ? "matches" : "CHANGED",
+                                         100.0 * (nps - baselineNps) / Math.max(baselineNps, 1)));
+
+        return baselineNodes == nodes;
+    }
+}
@@ -0,0 +1,20 @@
+package com.es.engines;
+
+/**
+ * Helpers shared by the engines that report their speed.
+ */
+final class EngineUtils {
+
+    private EngineUtils() {
+    }
+
+    /**
+     * Computes a node rate in double, so the count can't overflow the way nodes * 1e9 does in a long.
+     * @param nodes the number of nodes searched.
+     * @param nanos the time it took, in nanoseconds.
+     * @return the nodes per second.
+     */
+    static long nodesPerSecond(long nodes, long nanos) {
+        return (long) (nodes / (Math.max(nanos, 1) / 1e9));
+    }
+}
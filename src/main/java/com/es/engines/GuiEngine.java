@@ -56,10 +56,13 @@ public class GuiEngine implements Runnable {
             }
 
             int[] userMove;
+            int move;
             try {
                 userMove = utils.parseSingleMove(Color.WHITE, line);
 
-                board.makeMove(Board.createMoveValue(userMove[0], userMove[1], '-'));
+                // the moves in the tree have their flags, so look the move up the same way
+                move = board.createMove(userMove[0], userMove[1], '-');
+                board.makeMove(move);
             } catch(IllegalMoveException e) {
                 System.err.println("Illegal user move: " + e.getMessage());
                 continue;
@@ -71,7 +74,7 @@ public class GuiEngine implements Runnable {
             if(rootNode.getChildCount() > 0) {
                 MoveNode tmpNode = rootNode.getBestChild();
                 rootNode.clearChildren();    // so these can be GCed
-                rootNode = tmpNode.findChild(Board.createMoveValue(userMove[0], userMove[1], '-'));
+                rootNode = tmpNode.findChild(move);
                 tmpNode.clearChildren();    // so these can be GCed
             }
 
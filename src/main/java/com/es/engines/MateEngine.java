@@ -0,0 +1,263 @@
+package com.es.engines;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.es.Board;
+import com.es.CmdConfiguration;
+import com.es.Epd;
+import com.es.IllegalMoveException;
+import com.es.PgnUtils;
+import com.es.ai.MateTable;
+import com.es.ai.search.MateSearch;
+
+/**
+ * Proves the bm #N mate puzzles of an EPD file in parallel with a {@link MateSearch}, reporting the proof time of each.
+ *
+ * A puzzle is proven when a mate is found within its N moves; a shorter mate is reported too, as
+ * the puzzle has another solution. A negative N is a defence, proven when the side to move is
+ * mated within N moves whatever it plays. Each thread has its own search and table, which are
+ * kept from puzzle to puzzle; the move time limits each puzzle, and a results file gets one CSV
+ * line per puzzle.
+ */
+public class MateEngine implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MateEngine.class);
+
+    private static final String CSV_HEADER = "line,fen,mate_in,proven_in,move,timed_out,nodes,ms";
+
+    private final Configuration config;
+    private final long moveTime;   // in ns, 0 for no limit
+
+    private final ThreadLocal<MateSearch> searches;
+    private final ThreadLocal<Board> boards = new ThreadLocal<Board>() {
+        @Override
+        protected Board initialValue() {
+            return new Board();
+        }
+    };
+
+    private PrintWriter results;
+    private int puzzles;
+    private int proven;
+    private int timedOut;
+    private int skipped;
+    private long totalNodes;
+    private long totalTime;
+
+    public MateEngine(Configuration config) {
+        final int hashSize = config.getInt(CmdConfiguration.MATE_HASH_SIZE);
+        final boolean checksOnly = config.getBoolean(CmdConfiguration.CHECKS_ONLY, false);
+
+        this.config = config;
+        this.moveTime = config.getLong(CmdConfiguration.MOVE_TIME) * 1000000L;
+        this.searches = new ThreadLocal<MateSearch>() {
+            @Override
+            protected MateSearch initialValue() {
+                return new MateSearch(boards.get(), new MateTable(hashSize), checksOnly);
+            }
+        };
+    }
+
+    @Override
+    public void run() {
+        final String epdFile = config.getString(CmdConfiguration.EPD_FILE);
+        final String resultsFile = config.getString(CmdConfiguration.RESULTS_FILE);
+        final int threads = config.getInt(CmdConfiguration.THREADS);
+
+        if(epdFile == null) {
+            System.err.println("MATE mode needs an EPD file of puzzles: --" + CmdConfiguration.EPD_FILE);
+            return;
+        }
+
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final long start = System.nanoTime();
+
+        System.out.println("MATE: " + epdFile + (config.getBoolean(CmdConfiguration.CHECKS_ONLY, false) ? ", checks only" : "") +
+                           (moveTime > 0 ? ", " + moveTime / 1000000 + " ms a puzzle" : "") + ", " + threads + " threads");
+
+        try {
+            results = resultsFile == null ? null : new PrintWriter(new FileWriter(resultsFile));
+
+            if(results != null) {
+                results.println(CSV_HEADER);
+            }
+
+            runFile(epdFile, pool, threads);
+        } catch(IOException e) {
+            LOG.error("Error reading {}: {}", epdFile, e.getMessage());
+            System.err.println("Error reading " + epdFile + ": " + e.getMessage());
+            return;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            pool.shutdownNow();
+
+            if(results != null) {
+                results.close();
+            }
+        }
+
+        final long wallTime = System.nanoTime() - start;
+
+        System.out.println(String.format("TOTAL: %d of %d proven (%.1f%%), %d timed out, %d skipped, %,d nodes in %,d ms, %,d ms wall time, %,.0f puzzles a minute",
+                                         proven, puzzles, 100.0 * proven / Math.max(puzzles, 1), timedOut, skipped, totalNodes, totalTime / 1000000,
+                                         wallTime / 1000000, puzzles * 60.0e9 / Math.max(wallTime, 1)));
+    }
+
+    /**
+     * Reads the puzzles a line at a time, keeping a few per thread queued and reporting the
+     * results in order as they finish.
+     */
+    private void runFile(String epdFile, ExecutorService pool, int threads) throws IOException, InterruptedException {
+        final BufferedReader reader = new BufferedReader(new FileReader(epdFile));
+        final Deque<Future<Result>> pending = new ArrayDeque<Future<Result>>();
+        int lineNumber = 0;
+
+        try {
+            for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+                ++lineNumber;
+
+                if(line.trim().isEmpty()) {
+                    continue;
+                }
+
+                pending.add(pool.submit(new ProveTask(line, lineNumber)));
+
+                while(!pending.isEmpty() && (pending.size() > threads * 4 || pending.peek().isDone())) {
+                    report(pending.poll());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        while(!pending.isEmpty()) {
+            report(pending.poll());
+        }
+    }
+
+    private void report(Future<Result> future) throws InterruptedException {
+        final Result result;
+
+        try {
+            result = future.get();
+        } catch(ExecutionException e) {
+            LOG.error("Error proving a puzzle", e.getCause());
+            System.err.println("Error proving a puzzle: " + e.getCause());
+            ++skipped;
+            return;
+        }
+
+        if(result.error != null) {
+            System.err.println("Skipped line " + result.lineNumber + ": " + result.error);
+            ++skipped;
+            return;
+        }
+
+        final int mateIn = Math.abs(result.mateIn);
+        String outcome;
+
+        ++puzzles;
+        totalNodes += result.nodes;
+        totalTime += result.time;
+
+        if(result.provenIn > 0) {
+            ++proven;
+            outcome = String.format("proven in %,d ms, %s #%d", result.time / 1000000, result.mateIn > 0 ? result.move : "mated in", result.provenIn);
+            outcome += result.provenIn < mateIn ? " (shorter)" : "";
+        } else if(result.timedOut) {
+            ++timedOut;
+            outcome = String.format("timed out after %,d ms", result.time / 1000000);
+        } else {
+            outcome = String.format("NOT PROVEN in %,d ms", result.time / 1000000);
+        }
+
+        System.out.println(String.format("%d: %s bm #%d: %s, %,d nodes", result.lineNumber, result.fen, result.mateIn, outcome, result.nodes));
+
+        if(results != null) {
+            results.println(String.format("%d,%s,%d,%d,%s,%b,%d,%d",
+                                          result.lineNumber, result.fen, result.mateIn, result.provenIn, result.move,
+                                          result.timedOut, result.nodes, result.time / 1000000));
+        }
+    }
+
+    /**
+     * The outcome of proving one puzzle.
+     */
+    private static final class Result {
+        private int lineNumber;
+        private String fen;
+        private String move = "";   // the first move of the mate, empty for a defence
+        private String error;
+        private int mateIn;
+        private int provenIn;       // 0 if it wasn't proven
+        private boolean timedOut;
+        private long nodes;
+        private long time;          // ns
+    }
+
+    /**
+     * Proves one line's puzzle with the thread's search.
+     */
+    private final class ProveTask implements Callable<Result> {
+
+        private final String line;
+        private final int lineNumber;
+
+        ProveTask(String line, int lineNumber) {
+            this.line = line;
+            this.lineNumber = lineNumber;
+        }
+
+        @Override
+        public Result call() throws IllegalMoveException {
+            final Result ret = new Result();
+            final Board board = boards.get();
+            final MateSearch search = searches.get();
+
+            ret.lineNumber = lineNumber;
+
+            try {
+                ret.mateIn = Epd.parse(line, board).getMateIn();
+            } catch(IllegalMoveException | IllegalArgumentException e) {
+                ret.error = e.getMessage();
+                return ret;
+            }
+
+            if(ret.mateIn == 0) {
+                ret.error = "No bm #N to prove";
+                return ret;
+            }
+
+            final long start = System.nanoTime();
+
+            ret.fen = board.toFEN();
+            ret.provenIn = ret.mateIn > 0 ? search.findMate(ret.mateIn, moveTime) : search.findMated(-ret.mateIn, moveTime);
+            ret.time = System.nanoTime() - start;
+            ret.timedOut = search.isAborted();
+            ret.nodes = search.getNodes();
+
+            if(ret.provenIn > 0 && ret.mateIn > 0) {
+                ret.move = new PgnUtils(board).toSan(search.getBestMove());
+            }
+
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.es.engines;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.es.Board;
+import com.es.CmdConfiguration;
+import com.es.Epd;
+import com.es.IllegalMoveException;
+import com.es.ParallelPerft;
+import com.es.Perft;
+import com.es.PerftCache;
+
+/**
+ * Runs perft on a position or on each line of an EPD file, reporting the node counts and speed.
+ *
+ * EPD lines are counted to their deepest D1 to D6 count that isn't past the configured depth, and
+ * checked against it; the program exits with an error if any of them don't match.
+ *
+ * With more than one thread the counts are split across a {@link ParallelPerft}, and the speedup
+ * flag runs everything again for 1, 2, 4... threads up to the configured number and compares the times.
+ * A perft hash size turns on a {@link PerftCache} shared by all the positions and threads, and
+ * its hit rate is added to the totals.
+ */
+public class PerftEngine implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PerftEngine.class);
+
+    private static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private final Configuration config;
+    private final PerftCache cache;
+    private Perft perft;
+    private ParallelPerft parallelPerft;
+
+    private boolean printLines;
+    private long totalNodes;
+    private long totalTime;
+    private int failures;
+    private int mostFailures;   // the most failures in any run, for the exit code
+
+    public PerftEngine(Configuration config) {
+        this.config = config;
+
+        final int hashSize = config.getInt(CmdConfiguration.PERFT_HASH_SIZE);
+
+        this.cache = hashSize > 0 ? new PerftCache(hashSize) : null;
+    }
+
+    @Override
+    public void run() {
+        final int threads = config.getInt(CmdConfiguration.THREADS);
+
+        try {
+            if(config.getBoolean(CmdConfiguration.SPEEDUP, false)) {
+                runSpeedup(threads);
+            } else {
+                runAll(threads, true);
+            }
+        } catch(IOException e) {
+            LOG.error("Error reading {}: {}", config.getString(CmdConfiguration.EPD_FILE), e.getMessage());
+            System.err.println("Error reading " + config.getString(CmdConfiguration.EPD_FILE) + ": " + e.getMessage());
+            return;
+        } catch(IllegalMoveException e) {
+            LOG.error("Illegal move: {}", e.getMessage(), e);
+            System.err.println("Illegal move: " + e.getMessage());
+            return;
+        }
+
+        if(mostFailures != 0) {
+            LOG.error("{} positions had the wrong perft count", mostFailures);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the positions with 1, 2, 4... threads and prints how much faster each is than one thread.
+     */
+    private void runSpeedup(int maxThreads) throws IOException, IllegalMoveException {
+        long singleTime = 0;
+
+        for(int threads=1; ; threads = Math.min(threads * 2, maxThreads)) {
+            runAll(threads, false);
+
+            if(threads == 1) {
+                singleTime = totalTime;
+            }
+
+            System.out.println(String.format("%2d threads: %,d nodes in %,d ms, %,d nps, %.2fx speedup%s",
+                                             threads, totalNodes, totalTime / 1000000, EngineUtils.nodesPerSecond(totalNodes, totalTime), (double) singleTime / Math.max(totalTime, 1), cacheReport()));
+
+            if(threads >= maxThreads) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Runs all the positions with a number of threads, leaving the totals in the fields.
+     */
+    private void runAll(int threads, boolean printLines) throws IOException, IllegalMoveException {
+        final String epdFile = config.getString(CmdConfiguration.EPD_FILE);
+        final int depth = config.getInt(CmdConfiguration.DEPTH);
+        final boolean divide = config.getBoolean(CmdConfiguration.DIVIDE, false);
+
+        this.printLines = printLines;
+        totalNodes = totalTime = 0;
+        failures = 0;
+
+        // each run starts with an empty cache, so the runs in a speedup report are the same work
+        if(cache != null) {
+            cache.clear();
+        }
+
+        perft = new Perft(cache);
+        parallelPerft = threads > 1 ? new ParallelPerft(threads, config.getInt(CmdConfiguration.SPLIT_DEPTH), cache) : null;
+
+        try {
+            if(epdFile != null) {
+                runFile(epdFile, depth, divide);
+            } else {
+                runPosition(Board.fromFEN(config.getString(CmdConfiguration.FEN, START_FEN)), depth, -1, divide);
+            }
+        } finally {
+            if(parallelPerft != null) {
+                parallelPerft.shutdown();
+            }
+        }
+
+        if(printLines) {
+            System.out.println(String.format("TOTAL: %,d nodes in %,d ms, %,d nps, %d threads, %d failed%s",
+                                             totalNodes, totalTime / 1000000, EngineUtils.nodesPerSecond(totalNodes, totalTime), threads, failures, cacheReport()));
+        }
+
+        mostFailures = Math.max(mostFailures, failures);
+    }
+
+    private void runFile(String epdFile, int depth, boolean divide) throws IOException, IllegalMoveException {
+        final BufferedReader reader = new BufferedReader(new FileReader(epdFile));
+        final Board board = new Board();
+
+        if(depth > Epd.MAX_PERFT_DEPTH) {
+            final String warning = String.format("EPD files only have counts to D%d, positions with counts are checked at D%d at most instead of D%d",
+                                                 Epd.MAX_PERFT_DEPTH, Epd.MAX_PERFT_DEPTH, depth);
+
+            LOG.warn(warning);
+            System.err.println("WARNING: " + warning);
+        }
+
+        try {
+            for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if(line.trim().isEmpty()) {
+                    continue;
+                }
+
+                final Epd epd;
+
+                try {
+                    epd = Epd.parse(line, board);
+                } catch(IllegalArgumentException e) {
+                    LOG.warn("Skipping EPD line: {}", e.getMessage());
+                    System.err.println("SKIPPED: " + e.getMessage());
+                    continue;
+                }
+
+                int lineDepth = Math.min(depth, Epd.MAX_PERFT_DEPTH);
+
+                // the deepest count the line has, without going past the depth asked for
+                while(lineDepth > 1 && epd.getPerftCount(lineDepth) < 0) {
+                    --lineDepth;
+                }
+
+                if(epd.getPerftCount(lineDepth) < 0) {
+                    runPosition(board, depth, -1, divide);
+                } else {
+                    runPosition(board, lineDepth, epd.getPerftCount(lineDepth), divide);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void runPosition(Board board, int depth, long expected, boolean divide) throws IllegalMoveException {
+        final String fen = board.toFEN();
+        final long start = System.nanoTime();
+        long nodes = 0;
+
+        if(divide) {
+            final int[] moves = new int[Board.MAX_MOVES];
+            final long[] counts = new long[Board.MAX_MOVES];
+            final int count = perft.divide(board, depth, moves, counts);
+
+            for(int i=0; i < count; ++i) {
+                System.out.println("  " + moveToString(moves[i]) + ": " + counts[i]);
+                nodes += counts[i];
+            }
+        } else if(parallelPerft != null) {
+            nodes = parallelPerft.perft(board, depth);
+        } else {
+            nodes = perft.perft(board, depth);
+        }
+
+        final long elapsed = System.nanoTime() - start;
+        String result = "";
+
+        if(expected >= 0 && nodes == expected) {
+            result = " OK";
+        } else if(expected >= 0) {
+            result = " FAIL expected " + expected;
+            failures++;
+        }
+
+        totalNodes += nodes;
+        totalTime += elapsed;
+
+        if(printLines || result.startsWith(" FAIL")) {
+            System.out.println(String.format("%s D%d: %,d nodes in %,d ms, %,d nps%s", fen, depth, nodes, elapsed / 1000000, EngineUtils.nodesPerSecond(nodes, elapsed), result));
+        }
+    }
+
+    /**
+     * Describes how well the cache did in the last run, or nothing without a cache.
+     */
+    private String cacheReport() {
+        if(cache == null) {
+            return "";
+        }
+
+        final long probes = perft.getCacheProbes() + (parallelPerft == null ? 0 : parallelPerft.getCacheProbes());
+        final long hits = perft.getCacheHits() + (parallelPerft == null ? 0 : parallelPerft.getCacheHits());
+
+        return String.format(", cache hits %,d of %,d probes (%.1f%%) in %,d entries", hits, probes, 100.0 * hits / Math.max(probes, 1), cache.size());
+    }
+
+    /**
+     * Writes a move the way divide is usually printed by other engines, like e7e8q.
+     */
+    private static String moveToString(int move) {
+        final String ret = Board.squareToString(Board.getFromSquare(move)) + Board.squareToString(Board.getToSquare(move));
+
+        return Board.isPromotion(move) ? ret + "qbnr".charAt(Board.getPromoteValue(move) - 1) : ret;
+    }
+}
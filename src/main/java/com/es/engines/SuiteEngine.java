@@ -0,0 +1,334 @@
+package com.es.engines;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.es.Board;
+import com.es.CmdConfiguration;
+import com.es.Epd;
+import com.es.IllegalMoveException;
+import com.es.PgnUtils;
+import com.es.ai.MoveNode;
+import com.es.ai.evaluate.AbstractEvaluate;
+import com.es.ai.search.AbstractSearch;
+
+/**
+ * Solves the positions of a tactical test suite in parallel and reports how many were solved and how fast.
+ *
+ * The suite is either EPD with bm operations, or the "FEN ;bestmove" lines of the mate/*.PGN suites.
+ * Each position is searched at depth 1, 2, 3... up to the configured depth, or until the move
+ * time runs out; a depth that has started is always finished, as the searches can't be stopped.
+ * A position is solved at the depth from which the search's best move is always the expected
+ * one, and the time to solution is the time when that depth finished.
+ *
+ * The file is streamed and the positions are spread over the configured number of threads, with
+ * the results printed in file order. A results file gets one CSV line per position.
+ */
+public class SuiteEngine implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SuiteEngine.class);
+
+    private static final String CSV_HEADER = "line,fen,expected,best,solved,solved_depth,solved_ms,depth,nodes,ms";
+
+    private final Configuration config;
+    private final int maxDepth;
+    private final long moveTime;   // in ns, 0 for no limit
+    private final String search;
+    private final String evaluate;
+
+    private PrintWriter results;
+    private int positions;
+    private int solved;
+    private int skipped;
+    private long totalNodes;
+    private long totalTime;
+    private long totalSolvedTime;
+    private long totalSolvedDepth;
+    private int[] solvedAtDepth;   // [depth] the number of positions solved at that depth
+
+    public SuiteEngine(Configuration config) {
+        this.config = config;
+        this.maxDepth = config.getInt(CmdConfiguration.DEPTH);
+        this.moveTime = config.getLong(CmdConfiguration.MOVE_TIME) * 1000000L;
+        this.search = config.getString(CmdConfiguration.SEARCH);
+        this.evaluate = config.getString(CmdConfiguration.EVALUATE);
+    }
+
+    @Override
+    public void run() {
+        final String suiteFile = config.getString(CmdConfiguration.EPD_FILE);
+        final String resultsFile = config.getString(CmdConfiguration.RESULTS_FILE);
+        final int threads = config.getInt(CmdConfiguration.THREADS);
+
+        if(suiteFile == null) {
+            System.err.println("SUITE mode needs a suite file: --" + CmdConfiguration.EPD_FILE);
+            return;
+        }
+
+        solvedAtDepth = new int[maxDepth + 1];
+
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final long start = System.nanoTime();
+
+        System.out.println("SUITE: " + suiteFile + ", " + search + " search, " + evaluate + " evaluation, depth " + maxDepth +
+                           (moveTime > 0 ? ", " + moveTime / 1000000 + " ms a position" : "") + ", " + threads + " threads");
+
+        try {
+            results = resultsFile == null ? null : new PrintWriter(new FileWriter(resultsFile));
+
+            if(results != null) {
+                results.println(CSV_HEADER);
+            }
+
+            runFile(suiteFile, pool, threads);
+        } catch(IOException e) {
+            LOG.error("Error reading {}: {}", suiteFile, e.getMessage());
+            System.err.println("Error reading " + suiteFile + ": " + e.getMessage());
+            return;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            pool.shutdownNow();
+
+            if(results != null) {
+                results.close();
+            }
+        }
+
+        printTotals(System.nanoTime() - start);
+    }
+
+    /**
+     * Reads the suite a line at a time, keeping a few positions per thread queued and reporting
+     * the results in order as they finish.
+     */
+    private void runFile(String suiteFile, ExecutorService pool, int threads) throws IOException, InterruptedException {
+        final BufferedReader reader = new BufferedReader(new FileReader(suiteFile));
+        final Deque<Future<Result>> pending = new ArrayDeque<Future<Result>>();
+        int lineNumber = 0;
+
+        try {
+            for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+                ++lineNumber;
+
+                if(line.trim().isEmpty()) {
+                    continue;
+                }
+
+                pending.add(pool.submit(new SolveTask(line, lineNumber)));
+
+                while(!pending.isEmpty() && (pending.size() > threads * 4 || pending.peek().isDone())) {
+                    report(pending.poll());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        while(!pending.isEmpty()) {
+            report(pending.poll());
+        }
+    }
+
+    private void report(Future<Result> future) throws InterruptedException {
+        final Result result;
+
+        try {
+            result = future.get();
+        } catch(ExecutionException e) {
+            LOG.error("Error solving a position", e.getCause());
+            System.err.println("Error solving a position: " + e.getCause());
+            ++skipped;
+            return;
+        }
+
+        if(result.error != null) {
+            System.err.println("Skipped line " + result.lineNumber + ": " + result.error);
+            ++skipped;
+            return;
+        }
+
+        ++positions;
+        totalNodes += result.nodes;
+        totalTime += result.time;
+
+        if(result.solvedDepth > 0) {
+            ++solved;
+            ++solvedAtDepth[result.solvedDepth];
+            totalSolvedTime += result.solvedTime;
+            totalSolvedDepth += result.solvedDepth;
+        }
+
+        final String outcome = result.solvedDepth > 0 ? String.format("solved at depth %d in %,d ms", result.solvedDepth, result.solvedTime / 1000000) : "not solved";
+
+        System.out.println(String.format("%d: %s bm %s: %s, best %s at depth %d, %,d nodes in %,d ms",
+                                         result.lineNumber, result.fen, result.expected, outcome, result.best, result.depth, result.nodes, result.time / 1000000));
+
+        if(results != null) {
+            results.println(String.format("%d,%s,%s,%s,%b,%d,%d,%d,%d,%d",
+                                          result.lineNumber, result.fen, result.expected, result.best, result.solvedDepth > 0,
+                                          result.solvedDepth, result.solvedTime / 1000000, result.depth, result.nodes, result.time / 1000000));
+        }
+    }
+
+    private void printTotals(long wallTime) {
+        final StringBuilder curve = new StringBuilder();
+        int cumulative = 0;
+
+        // the number solved by each depth, the strength to compare against the time it took
+        for(int depth=1; depth <= maxDepth; ++depth) {
+            cumulative += solvedAtDepth[depth];
+            curve.append(depth == 1 ? "" : " ").append(depth).append('=').append(cumulative);
+        }
+
+        System.out.println(String.format("TOTAL: %d of %d solved (%.1f%%), %d skipped, %,d nodes in %,d ms, %,d ms wall time",
+                                         solved, positions, 100.0 * solved / Math.max(positions, 1), skipped, totalNodes, totalTime / 1000000, wallTime / 1000000));
+        System.out.println(String.format("SOLVED: mean time to solution %,d ms, mean depth to solution %.2f, solved by depth %s",
+                                         totalSolvedTime / Math.max(solved, 1) / 1000000, (double) totalSolvedDepth / Math.max(solved, 1), curve));
+    }
+
+    /**
+     * The outcome of solving one position.
+     */
+    private static final class Result {
+        private int lineNumber;
+        private String fen;
+        private String expected;
+        private String best;
+        private String error;
+        private int depth;          // the deepest search finished
+        private int solvedDepth;    // 0 if it wasn't solved
+        private long solvedTime;    // ns
+        private long nodes;
+        private long time;          // ns
+    }
+
+    /**
+     * Searches one line's position deeper and deeper, on its own board and search.
+     */
+    private final class SolveTask implements Callable<Result> {
+
+        private final String line;
+        private final int lineNumber;
+
+        SolveTask(String line, int lineNumber) {
+            this.line = line;
+            this.lineNumber = lineNumber;
+        }
+
+        @Override
+        public Result call() throws IllegalMoveException {
+            final Result ret = new Result();
+            final Board board = new Board();
+            final PgnUtils utils = new PgnUtils(board);
+            final int[] expected;
+
+            ret.lineNumber = lineNumber;
+
+            try {
+                expected = parseLine(board, utils);
+            } catch(IllegalMoveException | IllegalArgumentException e) {
+                ret.error = e.getMessage();
+                return ret;
+            }
+
+            ret.fen = board.toFEN();
+            ret.expected = utils.toSan(expected[0]);
+
+            for(int i=1; i < expected.length; ++i) {
+                ret.expected += " " + utils.toSan(expected[i]);
+            }
+
+            // the searches read the depth from the configuration, so it's set here for each iteration
+            final BaseConfiguration depthConfig = new BaseConfiguration();
+            final CompositeConfiguration searchConfig = new CompositeConfiguration();
+
+            searchConfig.addConfiguration(depthConfig);
+            searchConfig.addConfiguration(config);
+
+            final AbstractEvaluate eval = AbstractEvaluate.create(evaluate, board.getActiveColor());
+            final AbstractSearch ai = AbstractSearch.create(search, board.getActiveColor(), board, searchConfig, eval);
+            final long start = System.nanoTime();
+
+            for(int depth=1; depth <= maxDepth; ++depth) {
+                final MoveNode rootNode = new MoveNode();
+
+                depthConfig.setProperty(CmdConfiguration.DEPTH, depth);
+                ai.computeNextMove(rootNode);
+
+                final int best = ai.getBestMove();
+
+                ret.nodes += rootNode.getNodeCount();
+                ret.time = System.nanoTime() - start;
+                ret.depth = depth;
+                ret.best = best == Board.NULL_MOVE ? "none" : utils.toSan(best);
+
+                if(!contains(expected, best)) {
+                    ret.solvedDepth = 0;
+                } else if(ret.solvedDepth == 0) {
+                    ret.solvedDepth = depth;
+                    ret.solvedTime = ret.time;
+                }
+
+                if(moveTime > 0 && ret.time >= moveTime) {
+                    break;
+                }
+            }
+
+            if(ret.solvedDepth == 0) {
+                ret.solvedTime = 0;
+            }
+
+            return ret;
+        }
+
+        /**
+         * Sets the board up from the line and finds the best moves, from an EPD bm operation or the
+         * move after the semicolon in the PGN suites, which has ... before a move by black.
+         */
+        private int[] parseLine(Board board, PgnUtils utils) throws IllegalMoveException {
+            final Epd epd = Epd.parse(line, board);
+
+            if(epd.getBestMoves().length != 0) {
+                return epd.getBestMoves();
+            } else if(epd.getMateIn() != 0 || epd.getOperation("bm") != null) {
+                throw new IllegalMoveException("No best move to look for");
+            }
+
+            final int semicolon = line.indexOf(';');
+
+            if(semicolon < 0) {
+                throw new IllegalMoveException("No best move to look for");
+            }
+
+            return new int[] { utils.parseMove(line.substring(semicolon + 1).replace("...", "").trim()) };
+        }
+    }
+
+    private static boolean contains(int[] moves, int move) {
+        for(int m:moves) {
+            if(m == move) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -1,9 +1,6 @@
 package com.es.engines;
 
-import java.util.Arrays;
-import java.util.EnumMap;
 import java.util.List;
-import java.util.Map;
 
 import com.es.ai.evaluate.SimpleEvaluate;
 import com.es.ai.search.AbstractSearch;
@@ -44,21 +41,9 @@ public class UciEngine extends AbstractEngine {
 
     private Configuration config;
     private Board board;
-    private static final Map<GenericPosition, Integer> positions = new EnumMap<GenericPosition, Integer>(GenericPosition.class);
     private MoveNode currentNode;
     private IProtocol protocol;
 
-    static {
-        for (GenericPosition position : GenericPosition.values()) {
-            int file = Arrays.asList(GenericFile.values()).indexOf(position.file);
-            int rank = Arrays.asList(GenericRank.values()).indexOf(position.rank);
-
-            int intPosition = rank * 16 + file;
-
-            positions.put(position, intPosition);
-        }
-    }
-
     public UciEngine(Configuration config, UciProtocol protocol) {
         super(protocol);
         this.config = config;
@@ -137,7 +122,7 @@ public class UciEngine extends AbstractEngine {
         for (GenericMove move : moveList) {
             try {
                 // TODO: Add in piece promotion here
-                final int moveValue = Board.createMoveValue(positions.get(move.from), positions.get(move.to), '-');
+                final int moveValue = Board.createMoveValue(Board.toSquare(move.from), Board.toSquare(move.to), '-');
                 this.board.makeMove(moveValue);
             } catch (IllegalMoveException e) {
                 LOG.error("Illegal move: {}", e.getMessage(), e);
@@ -1,39 +1,39 @@
 package com.es.pieces;
 
+import java.util.Arrays;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.es.Bitboards;
 import com.es.Board;
 
 public abstract class AbstractPiece implements Piece {
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractPiece.class);
+    private static final int MAX_PIECE_MOVES = 32;  // a queen can reach at most 27 squares
     private final int[][] POSITION_VALUES;
 
-    private Color color;
-    private boolean hasMoved = false;
+    private final Color color;
+    private final int code;
+
+    /**
+     * Constructs the view of one of the standard pieces; use {@link Pieces#toPiece(int)} to get the shared instance.
+     */
+    protected AbstractPiece(Piece.Color color, int type) {
+        this.color = color;
+        this.code = Pieces.make(Bitboards.colorIndex(color), type);
+        this.POSITION_VALUES = Pieces.getPositionTable(type);
+    }
 
     public AbstractPiece(Piece.Color color, int[][] positionValues) {
         this.color = color;
+        this.code = Pieces.EMPTY;
         this.POSITION_VALUES = positionValues;
     }
 
     public static Piece makePiece(char p) {
-        switch(p) {
-        case 'P': return new Pawn(Color.WHITE);
-        case 'p': return new Pawn(Color.BLACK);
-        case 'R': return new Rook(Color.WHITE);
-        case 'r': return new Rook(Color.BLACK);
-        case 'N': return new Knight(Color.WHITE);
-        case 'n': return new Knight(Color.BLACK);
-        case 'B': return new Bishop(Color.WHITE);
-        case 'b': return new Bishop(Color.BLACK);
-        case 'Q': return new Queen(Color.WHITE);
-        case 'q': return new Queen(Color.BLACK);
-        case 'K': return new King(Color.WHITE);
-        case 'k': return new King(Color.BLACK);
-        default: return null;
-        }
+        return Pieces.toPiece(Pieces.fromChar(p));
     }
 
     public static int pieceToPromoteValue(char piece) {
@@ -51,13 +51,11 @@ public abstract class AbstractPiece implements Piece {
     }
 
     public static Piece promoteValueToPiece(int value, Color color) {
-        switch(value) {
-        case 1: return new Queen(color);
-        case 2: return new Bishop(color);
-        case 3: return new Knight(color);
-        case 4: return new Rook(color);
-        default: return null;
+        if(value < 1 || value > 4) {
+            return null;
         }
+
+        return Pieces.toPiece(Pieces.promoteCode(value, Bitboards.colorIndex(color)));
     }
 
     @Override
@@ -66,54 +64,53 @@ public abstract class AbstractPiece implements Piece {
     }
 
     @Override
-    public int getPositionValue(int square) {
-        int col = Board.squareToCol(square);
-        int row = Board.squareToRow(square);
+    public int getCode() {
+        return code;
+    }
 
-        if(getColor().equals(Color.BLACK)) {
-            col = (7 - col);
-        } else {
-            row = 7 - row;
-        }
+    @Override
+    public int getValue() {
+        return Pieces.getValue(code);
+    }
 
-        return POSITION_VALUES[row][col] + getValue();
+    @Override
+    public int getPositionValue(int square) {
+        return Pieces.positionValue(POSITION_VALUES, Bitboards.colorIndex(color), square) + getValue();
     }
 
     /**
-     * Checks to see if a piece can move in a certain direction or not.
-     *
-     * Returns true of the position was empty.
-     *
-     * @param positions The list of positions to possibly add the current one to.
-     * @param curIndex The current index into the above array.
-     * @param position The position to be checking.
-     * @return True if the spot was empty, false otherwise.
+     * Generates the moves from the tables in {@link Board#generatePieceMoves(int, int, int[], int)}.
      */
-    public boolean addPos(Board board, int[] positions, int curIndex, int position) {
-        if(Board.isValidPosition(position)) {
-//            LOG.debug("POS: {} INDEX: {}", Integer.toHexString(position), curIndex);
-            final Piece p = board.getPiece(position);
-
-            if(p == null) {
-                positions[curIndex] = position;  // add to possible positions if null
-                return true;
-            } else if(! p.getColor().equals(getColor())) {
-                positions[curIndex] = position;  // add to possible positions for capture
-                return false;
+    @Override
+    public int generateMoves(Board board, int curPos, int[] moves, int count) {
+        return board.generatePieceMoves(code, curPos, moves, count);
+    }
+
+    /**
+     * Builds the sorted array of squares from the moves appended by {@link #generateMoves(Board, int, int[], int)}.
+     */
+    @Override
+    public int[] generateAllMoves(Board board, int curPos) {
+        final int[] moves = new int[MAX_PIECE_MOVES];
+        final int count = generateMoves(board, curPos, moves, 0);
+        int size = 0;
+
+        for(int i=0; i < count; ++i) {
+            final int square = Board.getToSquare(moves[i]);
+
+            // promotions to the same square are appended one after another
+            if(size == 0 || moves[size-1] != square) {
+                moves[size++] = square;
             }
         }
 
-        positions[curIndex] = Board.MAX_SQUARE;   // fill in with our sentinel value
-        return false;
-    }
+        Arrays.sort(moves, 0, size);
 
-    @Override
-    public boolean hasMoved() {
-        return hasMoved;
+        return Arrays.copyOf(moves, size);
     }
 
     @Override
-    public void pieceMoved() {
-        hasMoved = true;
+    public String toString() {
+        return String.valueOf(Pieces.toChar(code));
     }
 }
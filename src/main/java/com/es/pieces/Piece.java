@@ -49,10 +49,29 @@ public interface Piece {
      */
     public int[] generateAllMoves(Board board, int curPos);
 
+    /**
+     * Appends the possible moves for the piece to a buffer supplied by the caller.
+     *
+     * The moves carry the same flags as {@link Board#createMove(int, int, char)} (capture, en passant,
+     * castle, double push and promotion), are not sorted, and a pawn reaching the last rank adds one
+     * move per promotion piece. Like
+     * {@link #generateAllMoves(Board, int)} there are NO checks for putting the king into check.
+     *
+     * @param board the board the piece is on.
+     * @param curPos the square the piece is on.
+     * @param moves the buffer to append the moves to.
+     * @param count the number of moves already in the buffer.
+     * @return the number of moves in the buffer after appending this piece's moves.
+     */
+    public int generateMoves(Board board, int curPos, int[] moves, int count);
+
     public int getValue();
 
     public int getPositionValue(int square);
 
-    public boolean hasMoved();
-    public void pieceMoved();
+    /**
+     * Returns the code {@link Board} stores for the piece, see {@link Pieces}.
+     * @return the piece's code.
+     */
+    public int getCode();
 }
@@ -0,0 +1,305 @@
+package com.es.pieces;
+
+import java.util.Arrays;
+
+import com.es.Bitboards;
+import com.es.Board;
+import com.es.pieces.Piece.Color;
+
+/**
+ * The byte codes {@link Board} stores for each square, and the tables that drive the pieces' behavior.
+ *
+ * The low 3 bits of a code are the type from {@link Bitboards} plus one, and {@link #BLACK} is set
+ * for black pieces, so 0 is an empty square. The {@link Piece} objects are shared, immutable views
+ * of a code for the public API; nothing on the hot path needs to allocate one.
+ */
+public final class Pieces {
+
+    public static final int EMPTY = 0;
+    public static final int BLACK = 0x08;
+
+    /**
+     * The number of codes, for sizing tables indexed by code.
+     */
+    public static final int CODES = 16;
+
+    public static final int WHITE_PAWN = 1;
+    public static final int WHITE_KNIGHT = 2;
+    public static final int WHITE_BISHOP = 3;
+    public static final int WHITE_ROOK = 4;
+    public static final int WHITE_QUEEN = 5;
+    public static final int WHITE_KING = 6;
+
+    public static final int BLACK_PAWN = WHITE_PAWN | BLACK;
+    public static final int BLACK_KNIGHT = WHITE_KNIGHT | BLACK;
+    public static final int BLACK_BISHOP = WHITE_BISHOP | BLACK;
+    public static final int BLACK_ROOK = WHITE_ROOK | BLACK;
+    public static final int BLACK_QUEEN = WHITE_QUEEN | BLACK;
+    public static final int BLACK_KING = WHITE_KING | BLACK;
+
+    public static final int[] KNIGHT_DELTAS = { 0x21, 0x1f, 0x12, 0x0e, -0x21, -0x1f, -0x12, -0x0e };
+    public static final int[] KING_DELTAS = { 0x11, -0x11, 0x0f, -0x0f, 0x10, -0x10, 0x01, -0x01 };
+
+    /**
+     * The squares a knight or king can move to from a square, only those on the board: [square][].
+     */
+    public static final int[][] KNIGHT_TARGETS = leaperTargets(KNIGHT_DELTAS);
+    public static final int[][] KING_TARGETS = leaperTargets(KING_DELTAS);
+
+    /**
+     * The square a pawn pushes to, and double pushes to from its starting rank, or -1: [color][square].
+     */
+    public static final int[][] PAWN_PUSHES = new int[2][Board.MAX_SQUARE];
+    public static final int[][] PAWN_DOUBLE_PUSHES = new int[2][Board.MAX_SQUARE];
+
+    /**
+     * The squares a pawn captures on from a square: [color][square][].
+     */
+    public static final int[][][] PAWN_CAPTURES = new int[2][Board.MAX_SQUARE][];
+
+    // indexed by type
+    private static final int[] VALUES = { 100, 300, 325, 500, 900, 100000 };
+
+    // indexed by the promote value of a move: q, b, n, r
+    private static final int[] PROMOTE_TYPES = { -1, Bitboards.QUEEN, Bitboards.BISHOP, Bitboards.KNIGHT, Bitboards.ROOK };
+
+    private static final String CHARS = ".PNBRQK..pnbrqk.";
+
+    private static final int[][] PAWN_POSITIONS =
+    { {  1,  1,  1,  1,  1,  1,  1,  1 },
+      { 50, 50, 50, 50, 50, 50, 50, 50 },
+      { 10, 10, 20, 30, 30, 20, 10, 10 },
+      {  5,  5, 10, 25, 25, 10,  5,  5 },
+      {  1,  1,  1, 20, 20,  1,  1,  1 },
+      {  5, -5,-10,  1,  1,-10, -5,  5 },
+      {  5, 10, 10,-20,-20, 10, 10,  5 },
+      {  1,  1,  1,  1,  1,  1,  1,  1 }
+    };
+
+    private static final int[][] KNIGHT_POSITIONS =
+    { { -50,-40,-30,-30,-30,-30,-40,-50 },
+      { -40,-20,  1,  1,  1,  1,-20,-40 },
+      { -30,  1, 10, 15, 15, 10,  1,-30 },
+      { -30,  5, 15, 20, 20, 15,  5,-30 },
+      { -30,  1, 15, 20, 20, 15,  1,-30 },
+      { -30,  5, 10, 15, 15, 10,  5,-30 },
+      { -40,-20,  1,  5,  5,  1,-20,-40 },
+      { -50,-40,-30,-30,-30,-30,-40,-50 }
+    };
+
+    private static final int[][] BISHOP_POSITIONS =
+    { { -20,-10,-10,-10,-10,-10,-10,-20 },
+      { -10,  1,  1,  1,  1,  1,  1,-10 },
+      { -10,  1,  5, 10, 10,  5,  1,-10 },
+      { -10,  5,  5, 10, 10,  5,  5,-10 },
+      { -10,  1, 10, 10, 10, 10,  1,-10 },
+      { -10, 10, 10, 10, 10, 10, 10,-10 },
+      { -10,  5,  1,  1,  1,  1,  5,-10 },
+      { -20,-10,-10,-10,-10,-10,-10,-20 }
+    };
+
+    private static final int[][] ROOK_POSITIONS =
+    { {  1,  1,  1,  1,  1,  1,  1,  1 },
+      {  5, 10, 10, 10, 10, 10, 10,  5 },
+      { -5,  1,  1,  1,  1,  1,  1, -5 },
+      { -5,  1,  1,  1,  1,  1,  1, -5 },
+      { -5,  1,  1,  1,  1,  1,  1, -5 },
+      { -5,  1,  1,  1,  1,  1,  1, -5 },
+      { -5,  1,  1,  1,  1,  1,  1, -5 },
+      {  1,  1,  1,  5,  5,  1,  1,  1 }
+    };
+
+    private static final int[][] QUEEN_POSITIONS =
+    { { -20,-10,-10, -5, -5,-10,-10,-20 },
+      { -10,  1,  1,  1,  1,  1,  1,-10 },
+      { -10,  1,  5,  5,  5,  5,  1,-10 },
+      {  -5,  1,  5,  5,  5,  5,  1, -5 },
+      {   1,  1,  5,  5,  5,  5,  1, -5 },
+      { -10,  5,  5,  5,  5,  5,  1,-10 },
+      { -10,  1,  5,  1,  1,  1,  1,-10 },
+      { -20,-10,-10, -5, -5,-10,-10,-20 }
+    };
+
+    private static final int[][] KING_POSITIONS =
+    { { -30,-40,-40,-50,-50,-40,-40,-30 },
+      { -30,-40,-40,-50,-50,-40,-40,-30 },
+      { -30,-40,-40,-50,-50,-40,-40,-30 },
+      { -30,-40,-40,-50,-50,-40,-40,-30 },
+      { -20,-30,-30,-40,-40,-30,-30,-20 },
+      { -10,-20,-20,-20,-20,-20,-20,-10 },
+      {  20, 20,  1,  1,  1,  1, 20, 20 },
+      {  20, 30, 10,  1,  1, 10, 30, 20 }
+    };
+
+    // indexed by type, must come before the views are built
+    private static final int[][][] POSITION_TABLES = { PAWN_POSITIONS, KNIGHT_POSITIONS, BISHOP_POSITIONS, ROOK_POSITIONS, QUEEN_POSITIONS, KING_POSITIONS };
+
+    // the value of the piece plus its position value: [code][square]
+    private static final int[][] POSITION_VALUES = new int[CODES][Board.MAX_SQUARE];
+
+    private static final Piece[] VIEWS = new Piece[CODES];
+
+    static {
+        for(int color=Bitboards.WHITE; color <= Bitboards.BLACK; ++color) {
+            final int forward = color == Bitboards.WHITE ? 0x10 : -0x10;
+            final int startRank = color == Bitboards.WHITE ? 1 : 6;
+
+            for(int square=0; square < Board.MAX_SQUARE; ++square) {
+                final int push = square + forward;
+
+                PAWN_PUSHES[color][square] = Board.isValidPosition(square) && Board.isValidPosition(push) ? push : -1;
+                PAWN_DOUBLE_PUSHES[color][square] = Board.isValidPosition(square) && (square >> 4) == startRank ? push + forward : -1;
+                PAWN_CAPTURES[color][square] = Board.isValidPosition(square) ? targets(square, new int[] { forward - 1, forward + 1 }) : new int[0];
+            }
+        }
+
+        for(int color=Bitboards.WHITE; color <= Bitboards.BLACK; ++color) {
+            for(int type=0; type < Bitboards.PIECE_TYPES; ++type) {
+                final int code = make(color, type);
+
+                for(int square=0; square < Board.MAX_SQUARE; ++square) {
+                    if(Board.isValidPosition(square)) {
+                        POSITION_VALUES[code][square] = positionValue(POSITION_TABLES[type], color, square) + VALUES[type];
+                    }
+                }
+            }
+        }
+
+        for(Color color:new Color[] { Color.WHITE, Color.BLACK }) {
+            final int c = Bitboards.colorIndex(color);
+
+            VIEWS[make(c, Bitboards.PAWN)] = new Pawn(color);
+            VIEWS[make(c, Bitboards.KNIGHT)] = new Knight(color);
+            VIEWS[make(c, Bitboards.BISHOP)] = new Bishop(color);
+            VIEWS[make(c, Bitboards.ROOK)] = new Rook(color);
+            VIEWS[make(c, Bitboards.QUEEN)] = new Queen(color);
+            VIEWS[make(c, Bitboards.KING)] = new King(color);
+        }
+    }
+
+    private Pieces() {
+    }
+
+    private static int[][] leaperTargets(int[] deltas) {
+        final int[][] ret = new int[Board.MAX_SQUARE][];
+
+        for(int square=0; square < Board.MAX_SQUARE; ++square) {
+            ret[square] = Board.isValidPosition(square) ? targets(square, deltas) : new int[0];
+        }
+
+        return ret;
+    }
+
+    private static int[] targets(int square, int[] deltas) {
+        final int[] ret = new int[deltas.length];
+        int count = 0;
+
+        for(int delta:deltas) {
+            if(Board.isValidPosition(square + delta)) {
+                ret[count++] = square + delta;
+            }
+        }
+
+        return Arrays.copyOf(ret, count);
+    }
+
+    /**
+     * Builds the code for a piece.
+     * @param color the color index, {@link Bitboards#WHITE} or {@link Bitboards#BLACK}.
+     * @param type the type of piece, one of the types in {@link Bitboards}.
+     * @return the code for the piece.
+     */
+    public static int make(int color, int type) {
+        return (type + 1) | (color << 3);
+    }
+
+    /**
+     * @return the type of the piece, one of the types in {@link Bitboards}, or -1 for an empty square.
+     */
+    public static int typeOf(int code) {
+        return (code & 0x07) - 1;
+    }
+
+    /**
+     * @return the color index of the piece, {@link Bitboards#WHITE} or {@link Bitboards#BLACK}.
+     */
+    public static int colorOf(int code) {
+        return code >> 3;
+    }
+
+    public static Color getColor(int code) {
+        return (code & BLACK) == 0 ? Color.WHITE : Color.BLACK;
+    }
+
+    public static int getValue(int code) {
+        return VALUES[typeOf(code)];
+    }
+
+    /**
+     * Looks up the value of a piece plus the value of it being on a square.
+     * @param code the piece's code.
+     * @param square the square the piece is on.
+     * @return the piece's value plus its position value.
+     */
+    public static int getPositionValue(int code, int square) {
+        return POSITION_VALUES[code][square];
+    }
+
+    /**
+     * Returns the code a pawn promotes to.
+     * @param promoteValue the promote value of a move, see {@link AbstractPiece#pieceToPromoteValue(char)}.
+     * @param color the color index of the pawn.
+     * @return the code for the promoted piece.
+     */
+    public static int promoteCode(int promoteValue, int color) {
+        return make(color, PROMOTE_TYPES[promoteValue]);
+    }
+
+    /**
+     * Returns the shared {@link Piece} view of a code.
+     * @param code the code for the piece.
+     * @return the piece, or null for an empty square.
+     */
+    public static Piece toPiece(int code) {
+        return VIEWS[code];
+    }
+
+    /**
+     * Converts a FEN character into a code.
+     * @param c the character, upper case for white and lower case for black.
+     * @return the code for the piece, or {@link #EMPTY} if the character isn't a piece.
+     */
+    public static int fromChar(char c) {
+        final int code = CHARS.indexOf(c);
+
+        return code < 0 || c == '.' ? EMPTY : code;
+    }
+
+    /**
+     * @return the FEN character for the piece.
+     */
+    public static char toChar(int code) {
+        return CHARS.charAt(code);
+    }
+
+    static int[][] getPositionTable(int type) {
+        return POSITION_TABLES[type];
+    }
+
+    /**
+     * Looks up a position value, flipping the table for the color the same way as
+     * {@link AbstractPiece#getPositionValue(int)}.
+     */
+    static int positionValue(int[][] table, int color, int square) {
+        int col = Board.squareToCol(square);
+        int row = Board.squareToRow(square);
+
+        if(color == Bitboards.BLACK) {
+            col = (7 - col);
+        } else {
+            row = 7 - row;
+        }
+
+        return table[row][col];
+    }
+}
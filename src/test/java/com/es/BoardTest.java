@@ -1,14 +1,19 @@
 package com.es;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.HashMap;
 import java.util.Map;
 
 import org.junit.Test;
 
-import com.es.Board.State;
+import com.es.ai.BoardStack;
+import com.es.ai.MoveList;
+import com.es.pieces.AbstractPiece;
+import com.es.pieces.Pieces;
 import com.es.pieces.Piece.Color;
 import com.fluxchess.jcpi.models.GenericBoard;
 
@@ -48,13 +53,417 @@ public class BoardTest {
 
     @Test
     public void testUnmakeMove() throws IllegalMoveException {
-        State boardState = board.makeMove(Board.createMoveValue(0x01, 0x22, '-'));
+        final String fen = board.toFEN();
+        final long key = board.getZobristKey();
+
+        board.makeMove(Board.createMoveValue(0x01, 0x22, '-'));
 
         System.out.println(board.toString());
 
-        board.unmakeMove(Board.createMoveValue(0x01, 0x22, '-'), boardState);
+        board.undoMove();
 
         System.out.println(board.toString());
+
+        assertEquals(fen, board.toFEN());
+        assertEquals(key, board.getZobristKey());
+    }
+
+    @Test
+    public void testUndoSpecialMoves() throws Exception {
+        final Board board = new Board(new GenericBoard("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 3 1"));
+        final String fen = board.toFEN();
+        final long key = board.getZobristKey();
+        final int material = board.getMaterialScore(Color.WHITE);
+
+        final int[] moves = {
+            Board.createMoveValue(0x04, 0x06, '-'),   // O-O
+            Board.createMoveValue(0x04, 0x02, '-'),   // O-O-O
+            Board.createMoveValue(0x44, 0x53, '-'),   // exd6 e.p.
+            Board.createMoveValue(0x61, 0x70, 'q'),   // bxa8=Q
+            Board.createMoveValue(0x00, 0x01, '-')    // Rb1
+        };
+
+        for(int move:moves) {
+            board.makeMove(move);
+            board.checkBoard();
+            board.undoMove();
+            board.checkBoard();
+
+            assertEquals(fen, board.toFEN());
+            assertEquals(key, board.getZobristKey());
+            assertEquals(material, board.getMaterialScore(Color.WHITE));
+        }
+
+        // the clock counts quiet moves and resets on a capture
+        board.makeMove(Board.createMoveValue(0x00, 0x01, '-'));
+        assertEquals(4, board.getHalfMoveClock());
+
+        board.makeMove(Board.createMoveValue(0x77, 0x67, '-'));
+        board.makeMove(Board.createMoveValue(0x61, 0x70, 'q'));
+        assertEquals(0, board.getHalfMoveClock());
+        assertEquals(material + 900 - 100 + 500, board.getMaterialScore(Color.WHITE));
+    }
+
+    @Test
+    public void testMoveFlags() throws Exception {
+        final int move = Board.createMoveValue(0x61, 0x70, 'n');
+
+        assertEquals(0x61, Board.getFromSquare(move));
+        assertEquals(0x70, Board.getToSquare(move));
+        assertEquals(AbstractPiece.pieceToPromoteValue('n'), Board.getPromoteValue(move));
+
+        assertEquals(Board.FLAG_DOUBLE_PUSH, Board.getFlags(board.createMove(0x14, 0x34, '-')));
+        assertEquals(0, Board.getFlags(board.createMove(0x06, 0x25, '-')));
+
+        final Board special = new Board(new GenericBoard("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 3 1"));
+
+        assertEquals(Board.FLAG_KING_CASTLE, Board.getFlags(special.createMove(0x04, 0x06, '-')));
+        assertEquals(Board.FLAG_QUEEN_CASTLE, Board.getFlags(special.createMove(0x04, 0x02, '-')));
+        assertTrue(Board.isEnPassant(special.createMove(0x44, 0x53, '-')));
+        assertTrue(Board.isCapture(special.createMove(0x44, 0x53, '-')));
+        assertTrue(Board.isCapture(special.createMove(0x61, 0x70, 'q')));
+        assertTrue(Board.isPromotion(special.createMove(0x61, 0x70, 'q')));
+        assertFalse(Board.isCapture(special.createMove(0x61, 0x71, 'q')));
+
+        // the generator sets the same flags, and every move fits in 16 bits
+        final int[] moves = new int[Board.MAX_MOVES];
+        final int count = special.generateAllMoves(moves);
+
+        for(int i=0; i < count; ++i) {
+            final char promote = "-qbnr".charAt(Board.getPromoteValue(moves[i]));
+
+            assertEquals(moves[i], special.createMove(Board.getFromSquare(moves[i]), Board.getToSquare(moves[i]), promote));
+            assertEquals(0, moves[i] & ~0xFFFF);
+        }
+    }
+
+    @Test
+    public void testCastlingRights() throws Exception {
+        Board board = new Board(new GenericBoard("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1"));
+
+        assertTrue(board.canKingCastle(Color.WHITE));
+        assertTrue(board.canQueenCastle(Color.BLACK));
+
+        // taking a rook loses both sides' rights on that corner
+        board.makeMove(Board.createMoveValue(0x00, 0x70, '-'));
+        assertEquals(Board.WHITE_KING_CASTLE | Board.BLACK_KING_CASTLE, board.getCastlingMask());
+        assertFalse(board.canQueenCastle(Color.BLACK));
+
+        board.undoMove();
+        assertEquals(0x0F, board.getCastlingMask());
+
+        // can't castle into an attacked square
+        board = new Board(new GenericBoard("r3k2r/8/8/8/8/8/7p/R3K2R w KQkq - 0 1"));
+        assertFalse(board.canKingCastle(Color.WHITE));
+        assertTrue(board.canQueenCastle(Color.WHITE));
+
+        board = new Board(new GenericBoard("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1"));
+        board.clearBoard();
+        assertEquals(0, board.getCastlingMask());
+    }
+
+    @Test
+    public void testLegalMoveQueries() throws Exception {
+        assertTrue(board.hasLegalMove());
+        assertEquals(20, board.countLegalMoves());
+
+        // the kiwipete position: castling, en passant and promotions all count
+        final Board kiwipete = new Board(new GenericBoard("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"));
+        assertEquals(48, kiwipete.countLegalMoves());
+
+        // back rank mate
+        final Board mate = new Board(new GenericBoard("3R2k1/5ppp/8/8/8/8/8/6K1 b - - 0 1"));
+        assertFalse(mate.hasLegalMove());
+        assertEquals(0, mate.countLegalMoves());
+        assertTrue(mate.isInCheck(Color.BLACK));
+
+        // stalemate
+        final Board stalemate = new Board(new GenericBoard("k7/2Q5/1K6/8/8/8/8/8 b - - 0 1"));
+        assertFalse(stalemate.hasLegalMove());
+        assertFalse(stalemate.isInCheck(Color.BLACK));
+
+        // the pinned rook can only move along the pin: 6 rook moves and 2 king moves
+        final Board pinned = new Board(new GenericBoard("k7/8/8/8/8/8/8/KR5r w - - 0 1"));
+        assertEquals(8, pinned.countLegalMoves());
+        assertEquals(pinned.generateAllMoves(new int[Board.MAX_MOVES]), pinned.countLegalMoves());
+    }
+
+    @Test
+    public void testPseudoLegal() throws Exception {
+        final Board board = new Board(new GenericBoard("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 3 1"));
+
+        assertTrue(board.isLegal(board.createMove(0x44, 0x53, '-')));          // en passant
+        assertTrue(board.isLegal(board.createMove(0x04, 0x06, '-')));          // castling
+        assertTrue(board.isLegal(board.createMove(0x61, 0x70, 'n')));          // promoting capture
+        assertFalse(board.isPseudoLegal(board.createMove(0x61, 0x71, '-')));   // has to promote
+        assertFalse(board.isPseudoLegal(Board.createMoveValue(0x61, 0x70, 'q')));  // missing the capture flag
+        assertFalse(board.isPseudoLegal(board.createMove(0x74, 0x64, '-')));   // not our piece
+        assertFalse(board.isPseudoLegal(board.createMove(0x00, 0x77, '-')));   // not on a line
+        assertFalse(board.isPseudoLegal(Board.NULL_MOVE));
+
+        // a king that walks into the rook is pseudo-legal but not legal
+        final Board check = new Board(new GenericBoard("4k3/8/8/8/8/8/3r4/4K3 w - - 0 1"));
+        final int move = check.createMove(0x04, 0x03, '-');
+
+        assertTrue(check.isPseudoLegal(move));
+        assertFalse(check.isLegal(move));
+        assertTrue(check.isLegal(check.createMove(0x04, 0x13, '-')));
+    }
+
+    @Test
+    public void testGivesCheck() throws Exception {
+        // bishop on c2 is in front of the queen on b1, the knight can check from f6
+        final Board board = new Board(new GenericBoard("8/7k/8/8/6N1/8/2B5/1Q2K3 w - - 0 1"));
+
+        assertTrue(board.givesCheck(board.createMove(0x12, 0x21, '-')));   // discovered by the bishop
+        assertTrue(board.givesCheck(board.createMove(0x36, 0x55, '-')));   // direct from the knight
+        assertFalse(board.givesCheck(board.createMove(0x36, 0x44, '-')));
+        assertFalse(board.givesCheck(board.createMove(0x04, 0x05, '-')));
+
+        // the rook gives check from f1 after castling, and the pawn promotes with check
+        final Board castle = new Board(new GenericBoard("5k2/1P6/8/8/8/8/8/4K2R w K - 0 1"));
+
+        assertTrue(castle.givesCheck(castle.createMove(0x04, 0x06, '-')));
+        assertTrue(castle.givesCheck(castle.createMove(0x61, 0x71, 'q')));
+        assertFalse(castle.givesCheck(castle.createMove(0x61, 0x71, 'n')));
+
+        // the checkers are kept by makeMove and undoMove
+        assertEquals(0L, castle.getCheckers());
+        castle.makeMove(castle.createMove(0x04, 0x06, '-'));
+        assertTrue(castle.isInCheck(Color.BLACK));
+        assertEquals(Bitboards.squareBit(0x05), castle.getCheckers());
+        castle.undoMove();
+        assertEquals(0L, castle.getCheckers());
+    }
+
+    @Test
+    public void testCopyFrom() throws Exception {
+        final Board original = new Board(new GenericBoard("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 3 1"));
+        final Board copy = new Board();
+
+        copy.copyFrom(original);
+        copy.checkBoard();
+        assertEquals(original, copy);
+        assertEquals(original.toFEN(), copy.toFEN());
+
+        // moves on the copy leave the original alone
+        copy.makeMove(copy.createMove(0x44, 0x53, '-'));
+        copy.checkBoard();
+        original.checkBoard();
+        assertEquals(Pieces.BLACK_PAWN, original.getPieceCode(0x43));
+        assertEquals(Pieces.EMPTY, copy.getPieceCode(0x43));
+
+        // the history isn't copied
+        copy.copyFrom(original);
+        try {
+            copy.undoMove();
+            fail("undid a move that was made before the copy");
+        } catch(IllegalMoveException e) {
+            assertEquals(original, copy);
+        }
+    }
+
+    @Test
+    public void testCopyMake() throws Exception {
+        final Board board = new Board(new GenericBoard("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 3 1"));
+        final BoardStack stack = new BoardStack(board);
+
+        // en passant, castling on both sides, and a capture that promotes
+        final int[][] line = { { 0x44, 0x53 }, { 0x74, 0x76 }, { 0x61, 0x70 }, { 0x76, 0x66 }, { 0x04, 0x02 } };
+        final char[] promotions = { '-', '-', 'q', '-', '-' };
+
+        for (int ply = 0; ply < line.length; ++ply) {
+            final int move = board.createMove(line[ply][0], line[ply][1], promotions[ply]);
+
+            assertTrue(board.isLegal(move));
+            board.makeMove(move, false);
+
+            final Board next = stack.copyMake(ply, move);
+
+            next.checkBoard();
+            assertEquals(board, next);
+            assertEquals(board.toFEN(), next.toFEN());
+            assertEquals(board.getZobristKey(), next.getZobristKey());
+            assertEquals(board.getCheckers(), next.getCheckers());
+        }
+
+        // each ply's board is left as it was
+        for (int ply = line.length - 1; ply >= 0; --ply) {
+            board.undoMove();
+            assertEquals(board, stack.get(ply));
+            assertEquals(board.getZobristKey(), stack.get(ply).getZobristKey());
+        }
+
+        // the copy-made boards don't keep a history to undo
+        final String fen = stack.get(1).toFEN();
+
+        try {
+            stack.get(1).undoMove();
+            fail("undid a copy-made move");
+        } catch(IllegalMoveException e) {
+            assertEquals(fen, stack.get(1).toFEN());
+        }
+
+        final Board kiwipete = new Board(new GenericBoard("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"));
+
+        assertEquals(new Perft().perft(kiwipete, 3), copyMakePerft(new BoardStack(kiwipete), new MoveList(), 3, 0));
+    }
+
+    private static long copyMakePerft(BoardStack stack, MoveList moveList, int depth, int ply) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        final int count = moveList.generate(stack.get(ply), ply);
+        long nodes = 0;
+
+        for (int i = 0; i < count; ++i) {
+            stack.copyMake(ply, moveList.getMove(ply, i));
+            nodes += copyMakePerft(stack, moveList, depth - 1, ply + 1);
+        }
+
+        return nodes;
+    }
+
+    @Test
+    public void testFromFEN() throws Exception {
+        final String[] fens = { "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                                "r3k2r/1P6/8/3pP3/8/8/8/R3K2R w Kq d6 3 12",
+                                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 b - - 0 1" };
+
+        for(String fen:fens) {
+            final Board board = Board.fromFEN(fen);
+
+            board.checkBoard();
+            assertEquals(new Board(new GenericBoard(fen)), board);
+            assertEquals(fen, board.toFEN());
+            assertEquals("x " + fen, board.toFEN(new StringBuilder("x ")).toString());
+        }
+
+        // the clocks are optional
+        assertEquals(1, Board.fromFEN("4k3/8/8/8/8/8/8/4K3 b - -").getMoves());
+
+        for(String fen:new String[] { "4k3/8/8/8/8/8/8/4K3", "4k3/8/8/9/8/8/8/4K3 w - -", "4k3/8/8/8/8/8/4K3 w - -", "4k3/8/8/8/8/8/8/4K3 w X -" }) {
+            try {
+                Board.fromFEN(fen);
+                fail("parsed " + fen);
+            } catch(IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testGetPiecesOfType() throws Exception {
+        final Board board = new Board(new GenericBoard("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 3 1"));
+        final int[] squares = new int[Board.MAX_PIECES];
+
+        assertEquals(2, board.getPiecesOfType(Color.WHITE, Bitboards.PAWN, squares));
+        assertEquals(2, board.getPiecesOfType(Color.BLACK, Bitboards.ROOK, squares));
+        assertEquals(0, board.getPiecesOfType(Color.WHITE, Bitboards.QUEEN, squares));
+
+        // the promotion takes a rook, and the lists are put back by the undo
+        board.makeMove(Board.createMoveValue(0x61, 0x70, 'q'));
+        board.checkBoard();
+
+        assertEquals(1, board.getPiecesOfType(Color.WHITE, Bitboards.PAWN, squares));
+        assertEquals(0x44, squares[0]);
+        assertEquals(1, board.getPiecesOfType(Color.BLACK, Bitboards.ROOK, squares));
+        assertEquals(0x77, squares[0]);
+        assertEquals(1, board.getPiecesOfType(Color.WHITE, Bitboards.QUEEN, squares));
+        assertEquals(0x70, squares[0]);
+
+        board.undoMove();
+        board.checkBoard();
+
+        assertEquals(2, board.getPiecesOfType(Color.WHITE, Bitboards.PAWN, squares));
+        assertEquals(2, board.getPiecesOfType(Color.BLACK, Bitboards.ROOK, squares));
+        assertEquals(0, board.getPiecesOfType(Color.WHITE, Bitboards.QUEEN, squares));
+    }
+
+    @Test
+    public void testBitboards() throws IllegalMoveException {
+        assertEquals(0xFFFF00000000FFFFL, board.getOccupied());
+        assertEquals(0x000000000000FF00L, board.getBitboard(Color.WHITE, Bitboards.PAWN));
+        assertEquals(0x1000000000000000L, board.getBitboard(Color.BLACK, Bitboards.KING));
+
+        final int move = Board.createMoveValue(0x14, 0x34, '-');
+        board.makeMove(move);
+
+        assertEquals(0x000000001000EF00L, board.getBitboard(Color.WHITE, Bitboards.PAWN));
+        assertEquals(0x000000001000EFFFL, board.getColorBitboard(Color.WHITE));
+
+        board.undoMove();
+
+        assertEquals(0xFFFF00000000FFFFL, board.getOccupied());
+        board.checkBoard();
+    }
+
+    @Test
+    public void testZobristKey() throws IllegalMoveException {
+        final Board other = new Board();
+        final long startKey = board.getZobristKey();
+        final long startPawnKey = board.getPawnKey();
+
+        // reach the same position with the moves in a different order
+        board.makeMove(Board.createMoveValue(0x06, 0x25, '-'));   // Nf3
+        board.makeMove(Board.createMoveValue(0x76, 0x55, '-'));   // Nf6
+        board.makeMove(Board.createMoveValue(0x01, 0x22, '-'));   // Nc3
+
+        other.makeMove(Board.createMoveValue(0x01, 0x22, '-'));   // Nc3
+        other.makeMove(Board.createMoveValue(0x76, 0x55, '-'));   // Nf6
+        other.makeMove(Board.createMoveValue(0x06, 0x25, '-'));   // Nf3
+
+        assertEquals(board.getZobristKey(), other.getZobristKey());
+        assertTrue(startKey != board.getZobristKey());
+        assertEquals(startPawnKey, board.getPawnKey());
+    }
+
+    @Test
+    public void testGenerateMovesIntoBuffer() throws Exception {
+        final int[] moves = new int[Board.MAX_MOVES];
+
+        assertEquals(20, board.generateAllMoves(moves));
+
+        // white to move with a pawn on the 7th rank: 4 promotions and 5 king moves
+        final Board promote = new Board(new GenericBoard("4k3/P7/8/8/8/8/8/4K3 w - - 0 1"));
+
+        assertEquals(9, promote.generateAllMoves(moves));
+    }
+
+    @Test
+    public void testGenerateLegalMoves() throws Exception {
+        final int[] moves = new int[Board.MAX_MOVES];
+
+        // the bishop is pinned to the king along the file, leaving only the king's 4 moves
+        assertEquals(4, new Board(new GenericBoard("4k3/4r3/8/8/8/8/4B3/4K3 w - - 0 1")).generateAllMoves(moves));
+
+        // in check from the rook: Kf1, Kd2, Kf2 or block with Be2
+        assertEquals(4, new Board(new GenericBoard("4k3/4r3/8/8/8/8/8/3BK3 w - - 0 1")).generateAllMoves(moves));
+
+        // double check from the rook and knight, so only Kd2 and Kf2
+        assertEquals(2, new Board(new GenericBoard("4k3/4r3/8/8/8/8/2n5/3BKB2 w - - 0 1")).generateAllMoves(moves));
+
+        // capturing en passant would expose the king to the rook, leaving b6, Ka4, Ka6 and Kb6
+        assertEquals(4, new Board(new GenericBoard("8/8/8/KPp4r/8/8/8/7k w - c6 0 1")).generateAllMoves(moves));
+    }
+
+    @Test
+    public void testStagedGeneration() throws Exception {
+        final int[] moves = new int[Board.MAX_MOVES];
+        Board board = new Board(new GenericBoard("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 3 1"));
+
+        // exd6 e.p., bxa8 and b8 with 4 promotions each, Rxa8 and Rxh8
+        assertEquals(11, board.generateCaptures(moves));
+        assertEquals(board.generateAllMoves(moves) - 11, board.generateQuiets(moves));
+
+        // Rf1, Rh8 and O-O
+        board = new Board(new GenericBoard("5k2/8/8/8/8/8/8/4K2R w K - 0 1"));
+        assertEquals(3, board.generateQuietChecks(moves));
+
+        // every knight move uncovers the rook
+        board = new Board(new GenericBoard("5k2/8/8/8/5N2/8/8/4KR2 w - - 0 1"));
+        assertEquals(8, board.generateQuietChecks(moves));
     }
 
     @Test
@@ -0,0 +1,56 @@
+package com.es;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.es.pieces.Pieces;
+
+public class DeltasTest {
+
+    @Test
+    public void testAgainstBitboards() {
+        for(int color=Bitboards.WHITE; color <= Bitboards.BLACK; ++color) {
+            for(int from=0; from < 64; ++from) {
+                final long[] attacks = new long[Bitboards.PIECE_TYPES];
+
+                attacks[Bitboards.PAWN] = Bitboards.PAWN_ATTACKS[color][from];
+                attacks[Bitboards.KNIGHT] = Bitboards.KNIGHT_ATTACKS[from];
+                attacks[Bitboards.BISHOP] = Bitboards.bishopAttacks(from, 0L);
+                attacks[Bitboards.ROOK] = Bitboards.rookAttacks(from, 0L);
+                attacks[Bitboards.QUEEN] = Bitboards.queenAttacks(from, 0L);
+                attacks[Bitboards.KING] = Bitboards.KING_ATTACKS[from];
+
+                for(int type=0; type < Bitboards.PIECE_TYPES; ++type) {
+                    for(int to=0; to < 64; ++to) {
+                        final boolean expected = ((attacks[type] >>> to) & 1) != 0;
+
+                        assertEquals(expected, Deltas.canAttack(Pieces.make(color, type), Bitboards.toSquare(from), Bitboards.toSquare(to)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStep() {
+        assertEquals(0x11, Deltas.step(0x00, 0x77));
+        assertEquals(-0x10, Deltas.step(0x74, 0x04));
+        assertEquals(0x21, Deltas.step(0x00, 0x21));
+        assertEquals(0, Deltas.step(0x00, 0x32));
+    }
+
+    @Test
+    public void testBoardAttacks() {
+        final Board board = new Board();
+
+        assertTrue(board.attacks(0x01, 0x22));      // Nb1-c3
+        assertTrue(board.attacks(0x03, 0x13));      // Qd1 defends d2
+        assertFalse(board.attacks(0x03, 0x33));     // Qd1 is blocked by the pawn on d2
+        assertFalse(board.attacks(0x13, 0x23));     // pawns don't attack straight ahead
+        assertTrue(board.attacks(0x63, 0x54));      // d7 attacks e6
+        assertFalse(board.attacks(0x33, 0x44));     // empty square
+    }
+}
@@ -0,0 +1,56 @@
+package com.es;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class EpdTest {
+
+    @Test
+    public void testPerftCounts() throws Exception {
+        final Epd epd = Epd.parse("4k3/8/8/8/8/8/8/4K2R w K - 0 1 ;D1 15 ;D2 66 ;D3 1197");
+
+        assertEquals("4k3/8/8/8/8/8/8/4K2R w K - 0 1", epd.getBoard().toFEN());
+        assertEquals(15L, epd.getPerftCount(1));
+        assertEquals(1197L, epd.getPerftCount(3));
+        assertEquals(-1L, epd.getPerftCount(4));
+        assertEquals(0, epd.getBestMoves().length);
+    }
+
+    @Test
+    public void testMoves() throws Exception {
+        final Board board = new Board();
+        final Epd epd = Epd.parse("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - bm Bb5 Bc4; am Qh5; id \"test; one\";", board);
+
+        assertArrayEquals(new int[] { board.createMove(0x05, 0x41, '-'), board.createMove(0x05, 0x32, '-') }, epd.getBestMoves());
+        assertArrayEquals(new int[] { board.createMove(0x03, 0x47, '-') }, epd.getAvoidMoves());
+        assertEquals("test; one", epd.getId());
+        assertEquals(1, board.getMoves());
+    }
+
+    @Test
+    public void testMatePuzzle() throws Exception {
+        final Epd epd = Epd.parse("5K2/8/2qk4/2nPp3/3r4/6B1/B7/3R4 w - e6 bm #1; ep; 00:00;");
+
+        assertEquals(1, epd.getMateIn());
+        assertEquals(0x54, epd.getBoard().getEnPassant());
+        assertEquals("", epd.getOperation("ep"));
+        assertNull(epd.getId());
+    }
+
+    @Test
+    public void testKings() throws Exception {
+        // the move generator can't run without a king for each side
+        for(String line:new String[] { "k7/8/8/8/8/8/8/R7 w - - 0 1", "8/8/8/8/8/8/8/K7 b - -", "k7/8/8/8/8/8/8/KK6 w - - ;D1 3" }) {
+            try {
+                Epd.parse(line);
+                fail("parsed " + line);
+            } catch(IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.es;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MagicsTest {
+
+    @Test
+    public void testAgainstRayAttacks() {
+        final Random random = new Random(42);
+
+        for(int i=0; i < 10000; ++i) {
+            final int index = random.nextInt(64);
+            final long occupied = random.nextLong() & random.nextLong();
+
+            assertEquals(Bitboards.rookRayAttacks(index, occupied), Magics.rookAttacks(index, occupied));
+            assertEquals(Bitboards.bishopRayAttacks(index, occupied), Magics.bishopAttacks(index, occupied));
+        }
+    }
+
+    @Test
+    public void testEmptyBoard() {
+        // a rook on a1 sees the whole first rank and a-file
+        assertEquals(0x01010101010101FEL, Magics.rookAttacks(0, 0L));
+
+        // a bishop on d4 sees both long-ish diagonals
+        assertEquals(0x8041221400142241L, Magics.bishopAttacks(Bitboards.toIndex(0x33), 0L));
+    }
+}
@@ -10,7 +10,6 @@ import java.util.List;
 
 import org.junit.Test;
 
-import com.es.Board.State;
 import com.es.pieces.Piece.Color;
 import com.fluxchess.jcpi.models.GenericBoard;
 import com.fluxchess.jcpi.models.IllegalNotationException;
@@ -100,16 +99,15 @@ public class MoveGeneratorTest {
         // generate all the moves
         final int[] allMoves = board.generateAllMoves();
 
-        // go through all the moves, we stop when we see one that is Board.MAX_SQUARE
-        for (int i = 0; i < allMoves.length && Board.getFromSquare(allMoves[i]) != Board.MAX_SQUARE; ++i) {
-            State boardState = null;
+        // go through all the moves, we stop when we see the Board.NULL_MOVE padding
+        for (int i = 0; i < allMoves.length && allMoves[i] != Board.NULL_MOVE; ++i) {
             //final String from = Integer.toHexString(Board.getFromSquare(allMoves[i]));
             //final String to = Integer.toHexString(Board.getToSquare(allMoves[i]));
 
             try {
                 //board.checkBoard();
                 //System.out.println(moveCount++ + " : " + color + " " + board.moveToStringWithPieces(allMoves[i]) + " (" + board.getEnPassant() + ")");
-                boardState = board.makeMove(allMoves[i]);
+                board.makeMove(allMoves[i]);
                 //board.checkBoard();
 
                 if(depth == 1) {
@@ -135,7 +133,7 @@ public class MoveGeneratorTest {
 
             try {
                 // System.out.println("UN-MOVE: " + color + " " + from + " -> " + to + " (" + board.getEnPassant() + ")");
-                board.unmakeMove(allMoves[i], boardState);
+                board.undoMove();
                 //board.checkBoard();
             } catch (IllegalMoveException e) {
                 System.err.println(board);
@@ -0,0 +1,86 @@
+package com.es;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+
+import org.junit.Test;
+
+public class PerftTest {
+
+    private final Perft perft = new Perft();
+
+    @Test
+    public void testPerftSuite() throws Exception {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream("/perftsuite.epd")));
+        final Board board = new Board();
+        int lines = 0;
+
+        // every line to depth 3 keeps this quick, the PERFT mode can go deeper
+        for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+            final Epd epd = Epd.parse(line, board);
+            final String fen = board.toFEN();
+
+            assertEquals(fen, epd.getPerftCount(3), perft.perft(board, 3));
+            assertEquals(fen, fen, board.toFEN());
+            ++lines;
+        }
+
+        reader.close();
+        assertEquals(127, lines);
+    }
+
+    @Test
+    public void testParallelPerft() throws Exception {
+        final ParallelPerft parallel = new ParallelPerft(3, 2);
+        final Board board = Board.fromFEN("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        final String fen = board.toFEN();
+
+        try {
+            assertEquals(4085603L, parallel.perft(board, 4));
+            assertEquals(2039L, parallel.perft(board, 2));
+            assertEquals(48L, parallel.perft(board, 1));
+            assertEquals(fen, board.toFEN());
+        } finally {
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    public void testPerftCache() throws Exception {
+        final PerftCache cache = new PerftCache(1);
+        final Perft cached = new Perft(cache);
+        final Board board = Board.fromFEN("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+
+        assertEquals(4085603L, cached.perft(board, 4));
+        assertTrue(cached.getCacheHits() > 0);
+
+        // the second count comes straight from the cache
+        assertEquals(4085603L, cached.perft(board, 4));
+        assertEquals(4085603L, cache.probe(board.getZobristKey(), 4));
+        assertEquals(-1L, cache.probe(board.getZobristKey(), 5));
+
+        // a shallower count goes in the second entry and doesn't push out the deeper one
+        cache.store(board.getZobristKey() + 2 * cache.size(), 2, 17);
+        assertEquals(4085603L, cache.probe(board.getZobristKey(), 4));
+        assertEquals(17L, cache.probe(board.getZobristKey() + 2 * cache.size(), 2));
+    }
+
+    @Test
+    public void testDivide() throws Exception {
+        final Board board = Board.fromFEN("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        final int[] moves = new int[Board.MAX_MOVES];
+        final long[] counts = new long[Board.MAX_MOVES];
+        final int count = perft.divide(board, 3, moves, counts);
+        long nodes = 0;
+
+        for(int i=0; i < count; ++i) {
+            nodes += counts[i];
+        }
+
+        assertEquals(48, count);
+        assertEquals(97862L, nodes);
+    }
+}
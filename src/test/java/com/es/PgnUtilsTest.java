@@ -5,6 +5,7 @@ import static org.junit.Assert.assertEquals;
 import org.junit.Test;
 
 import com.es.pieces.Piece.Color;
+import com.fluxchess.jcpi.models.GenericBoard;
 
 public class PgnUtilsTest {
 
@@ -27,6 +28,40 @@ public class PgnUtilsTest {
         assertEquals(0x42, ret[1]);
     }
 
+    @Test
+    public void testParseMove() throws Exception {
+        final Board board = new Board(new GenericBoard("r3k2r/1P6/8/3pP3/8/8/8/R3K1NR w KQkq d6 0 1"));
+        final PgnUtils utils = new PgnUtils(board);
+
+        assertEquals(board.createMove(0x04, 0x02, '-'), utils.parseMove("O-O-O"));
+        assertEquals(board.createMove(0x44, 0x53, '-'), utils.parseMove("exd6"));
+        assertEquals(board.createMove(0x61, 0x70, 'n'), utils.parseMove("bxa8=N+"));
+        assertEquals(board.createMove(0x61, 0x71, 'q'), utils.parseMove("b8Q"));
+        assertEquals(board.createMove(0x06, 0x25, '-'), utils.parseMove("Nf3"));
+        assertEquals(board.createMove(0x00, 0x03, '-'), utils.parseMove("Rd1"));
+    }
+
+    @Test
+    public void testToSan() throws Exception {
+        final Board board = Board.fromFEN("r3k2r/1P6/8/R2pP3/8/5N2/8/RN2K3 w Qkq d6 0 1");
+        final PgnUtils utils = new PgnUtils(board);
+
+        assertEquals("O-O-O", utils.toSan(board.createMove(0x04, 0x02, '-')));
+        assertEquals("exd6", utils.toSan(board.createMove(0x44, 0x53, '-')));
+        assertEquals("bxa8=N", utils.toSan(board.createMove(0x61, 0x70, 'n')));
+        assertEquals("b8=Q", utils.toSan(board.createMove(0x61, 0x71, 'q')));
+        assertEquals("Nbd2", utils.toSan(board.createMove(0x01, 0x13, '-')));
+        assertEquals("R1a3", utils.toSan(board.createMove(0x00, 0x20, '-')));
+        assertEquals("Rxd5", utils.toSan(board.createMove(0x40, 0x43, '-')));
+
+        // every move written out is read back as the same move
+        final int[] moves = board.generateAllMoves();
+
+        for(int i=0; moves[i] != Board.NULL_MOVE; ++i) {
+            assertEquals(utils.toSan(moves[i]), moves[i], utils.parseMove(utils.toSan(moves[i])));
+        }
+    }
+
     @Test
     public void testComputePawnPgnMove() {
         String move = utils.computePgnMove(Board.createMoveValue(0x13, 0x23, '-'));
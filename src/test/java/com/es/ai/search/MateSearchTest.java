@@ -0,0 +1,62 @@
+package com.es.ai.search;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.es.Board;
+import com.es.ai.MateTable;
+
+public class MateSearchTest {
+
+    private final MateTable table = new MateTable(1);
+
+    @Test
+    public void testMateInOne() throws Exception {
+        // only the en passant capture uncovers the bishop
+        final Board board = Board.fromFEN("5K2/8/2qk4/2nPp3/3r4/6B1/B7/3R4 w - e6 0 1");
+        final MateSearch search = new MateSearch(board, table, false);
+
+        assertEquals(1, search.findMate(1, 0));
+        assertEquals(board.createMove(0x43, 0x54, '-'), search.getBestMove());
+        assertEquals("5K2/8/2qk4/2nPp3/3r4/6B1/B7/3R4 w - e6 0 1", board.toFEN());
+    }
+
+    @Test
+    public void testMateInTwo() throws Exception {
+        final Board board = Board.fromFEN("8/8/8/8/8/8/4QRb1/R3K2k w Q - 0 1");
+        final MateSearch search = new MateSearch(board, table, false);
+
+        assertEquals(0, search.findMate(1, 0));
+        assertEquals(2, search.findMate(3, 0));
+
+        // Qe4 is quiet, so checks only can't find it; after it every defence is mated, Bxe4 by O-O-O
+        assertEquals(board.createMove(0x14, 0x34, '-'), search.getBestMove());
+        assertEquals(0, new MateSearch(board, new MateTable(1), true).findMate(2, 0));
+
+        board.makeMove(search.getBestMove());
+        assertEquals(1, new MateSearch(board, new MateTable(1), false).findMated(1, 0));
+    }
+
+    @Test
+    public void testMated() throws Exception {
+        // Kh7 is forced, then Qg7 mates
+        final Board board = Board.fromFEN("7k/8/5K2/8/8/8/8/6Q1 b - - 0 1");
+        final MateSearch search = new MateSearch(board, table, true);
+
+        assertEquals(1, search.findMated(1, 0));
+        assertEquals(0, search.findMate(5, 0));
+    }
+
+    @Test
+    public void testMateTable() {
+        table.storeProven(1L, 3);
+        table.storeRefuted(2L, 2);
+
+        assertEquals(MateTable.PROVEN, table.probe(1L, 4));
+        assertEquals(MateTable.UNKNOWN, table.probe(1L, 2));
+        assertEquals(MateTable.REFUTED, table.probe(2L, 1));
+        assertEquals(MateTable.UNKNOWN, table.probe(2L, 3));
+        assertEquals(MateTable.UNKNOWN, table.probe(3L, 1));
+    }
+}
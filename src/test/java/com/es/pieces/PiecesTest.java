@@ -0,0 +1,68 @@
+package com.es.pieces;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.es.Bitboards;
+import com.es.Board;
+import com.es.pieces.Piece.Color;
+
+public class PiecesTest {
+
+    @Test
+    public void testCodes() {
+        for(char c:"PNBRQKpnbrqk".toCharArray()) {
+            final int code = Pieces.fromChar(c);
+            final Piece piece = Pieces.toPiece(code);
+
+            assertEquals(c, Pieces.toChar(code));
+            assertEquals(code, piece.getCode());
+            assertEquals(Character.isUpperCase(c) ? Color.WHITE : Color.BLACK, piece.getColor());
+            assertSame(piece, AbstractPiece.makePiece(c));
+        }
+
+        assertEquals(Pieces.EMPTY, Pieces.fromChar('x'));
+        assertNull(Pieces.toPiece(Pieces.EMPTY));
+
+        assertEquals(Pieces.BLACK_QUEEN, Pieces.promoteCode(AbstractPiece.pieceToPromoteValue('q'), Bitboards.BLACK));
+        assertEquals(Pieces.WHITE_KNIGHT, Pieces.promoteCode(AbstractPiece.pieceToPromoteValue('n'), Bitboards.WHITE));
+    }
+
+    @Test
+    public void testTargetTables() {
+        // only the squares on the board are listed
+        assertEquals(2, Pieces.KNIGHT_TARGETS[0x00].length);
+        assertEquals(8, Pieces.KNIGHT_TARGETS[0x33].length);
+        assertEquals(3, Pieces.KING_TARGETS[0x77].length);
+        assertEquals(0, Pieces.KING_TARGETS[0x08].length);
+
+        assertEquals(0x24, Pieces.PAWN_PUSHES[Bitboards.WHITE][0x14]);
+        assertEquals(0x34, Pieces.PAWN_DOUBLE_PUSHES[Bitboards.WHITE][0x14]);
+        assertEquals(0x44, Pieces.PAWN_DOUBLE_PUSHES[Bitboards.BLACK][0x64]);
+        assertEquals(-1, Pieces.PAWN_DOUBLE_PUSHES[Bitboards.WHITE][0x24]);
+        assertEquals(-1, Pieces.PAWN_PUSHES[Bitboards.BLACK][0x04]);
+
+        assertArrayEquals(new int[] { 0x21 }, Pieces.PAWN_CAPTURES[Bitboards.WHITE][0x10]);
+        assertArrayEquals(new int[] { 0x53, 0x55 }, Pieces.PAWN_CAPTURES[Bitboards.BLACK][0x64]);
+    }
+
+    @Test
+    public void testPositionValues() {
+        for(char c:"PNBRQKpnbrqk".toCharArray()) {
+            final int code = Pieces.fromChar(c);
+
+            for(int square=0; square < Board.MAX_SQUARE; ++square) {
+                if(Board.isValidPosition(square)) {
+                    assertEquals(Pieces.toPiece(code).getPositionValue(square), Pieces.getPositionValue(code, square));
+                }
+            }
+        }
+
+        // black's table is mirrored onto its own side of the board
+        assertEquals(Pieces.getPositionValue(Pieces.WHITE_KING, 0x06), Pieces.getPositionValue(Pieces.BLACK_KING, 0x71));
+    }
+}
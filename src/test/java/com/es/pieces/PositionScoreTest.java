@@ -72,6 +72,10 @@ public class PositionScoreTest {
             return null;
         }
 
+        public int generateMoves(Board board, int curPos, int[] moves, int count) {
+            return count;
+        }
+
         public int getValue() {
             return 0;
         }